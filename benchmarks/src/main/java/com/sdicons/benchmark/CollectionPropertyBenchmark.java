@@ -0,0 +1,103 @@
+/*
+ * Library "lib-messagebus".
+ * Copyright (c) 2011 Bruno Ranschaert, SDI-Consulting BVBA.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sdicons.benchmark;
+
+import com.sdicons.bus.MessageBus;
+import com.sdicons.prop.ListProperty;
+import com.sdicons.prop.SetProperty;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bulk operations on list and set properties, every element results in an event on the bus.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CollectionPropertyBenchmark
+{
+    @Param({"10", "1000"})
+    public int size;
+
+    @Param({"false", "true"})
+    public boolean constrained;
+
+    private ListProperty<Integer> list;
+    private SetProperty<Integer> set;
+    private List<Integer> values;
+    private Object listener;
+
+    @Setup
+    public void setup(Blackhole aBlackhole)
+    {
+        final MessageBus lBus = new MessageBus();
+        listener = new Listeners.Any(aBlackhole);
+        lBus.register(listener);
+        list = new ListProperty<Integer>("list", constrained, this, lBus);
+        set = new SetProperty<Integer>("set", constrained, this, lBus);
+        values = new ArrayList<Integer>(size);
+        for (int i = 0; i < size; i++)
+        {
+            values.add(i);
+        }
+    }
+
+    @Benchmark
+    public void listAddAllRemoveAll()
+    {
+        list.addAllValues(values);
+        list.removeAllValues(values);
+    }
+
+    @Benchmark
+    public void listAddAllClear()
+    {
+        list.addAllValues(values);
+        list.clearValues();
+    }
+
+    @Benchmark
+    public void setAddAllRemoveAll()
+    {
+        set.addAllValues(values);
+        set.removeAllValues(values);
+    }
+}
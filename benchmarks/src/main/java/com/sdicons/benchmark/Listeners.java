@@ -0,0 +1,146 @@
+/*
+ * Library "lib-messagebus".
+ * Copyright (c) 2011 Bruno Ranschaert, SDI-Consulting BVBA.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sdicons.benchmark;
+
+import com.sdicons.bus.Notify;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.beans.IndexedPropertyChangeEvent;
+import java.beans.PropertyChangeEvent;
+import java.util.EventObject;
+
+/**
+ * Subscribers used by the benchmarks. Each class listens to another event type, so a mix of them
+ * gives a bus where every event reaches only part of the handlers.
+ */
+public class Listeners
+{
+    /**
+     * Event type that only the {@link Custom} listeners are interested in.
+     */
+    public static class CustomEvent
+    extends EventObject
+    {
+        public CustomEvent(Object aSource)
+        {
+            super(aSource);
+        }
+    }
+
+    /**
+     * Base class, the handlers pass the event to the black hole so the calls cannot be optimized away.
+     */
+    public static abstract class Base
+    {
+        private final Blackhole blackhole;
+
+        protected Base(Blackhole aBlackhole)
+        {
+            blackhole = aBlackhole;
+        }
+
+        protected void consume(EventObject aEvent)
+        {
+            blackhole.consume(aEvent);
+        }
+    }
+
+    public static class Any
+    extends Base
+    {
+        public Any(Blackhole aBlackhole)
+        {
+            super(aBlackhole);
+        }
+
+        @Notify
+        public void callback(EventObject aEvent)
+        {
+            consume(aEvent);
+        }
+    }
+
+    public static class Change
+    extends Base
+    {
+        public Change(Blackhole aBlackhole)
+        {
+            super(aBlackhole);
+        }
+
+        @Notify
+        public void callback(PropertyChangeEvent aEvent)
+        {
+            consume(aEvent);
+        }
+    }
+
+    public static class IndexedChange
+    extends Base
+    {
+        public IndexedChange(Blackhole aBlackhole)
+        {
+            super(aBlackhole);
+        }
+
+        @Notify
+        public void callback(IndexedPropertyChangeEvent aEvent)
+        {
+            consume(aEvent);
+        }
+    }
+
+    public static class Custom
+    extends Base
+    {
+        public Custom(Blackhole aBlackhole)
+        {
+            super(aBlackhole);
+        }
+
+        @Notify
+        public void callback(CustomEvent aEvent)
+        {
+            consume(aEvent);
+        }
+    }
+
+    /**
+     * Create a listener of one of the four kinds.
+     *
+     * @param aIndex Selects the kind of listener.
+     * @param aBlackhole Receives the events.
+     * @return The listener.
+     */
+    public static Object create(int aIndex, Blackhole aBlackhole)
+    {
+        switch (aIndex & 3)
+        {
+            case 0: return new Any(aBlackhole);
+            case 1: return new Change(aBlackhole);
+            case 2: return new IndexedChange(aBlackhole);
+            default: return new Custom(aBlackhole);
+        }
+    }
+}
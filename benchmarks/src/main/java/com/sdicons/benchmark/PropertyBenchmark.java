@@ -0,0 +1,100 @@
+/*
+ * Library "lib-messagebus".
+ * Copyright (c) 2011 Bruno Ranschaert, SDI-Consulting BVBA.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sdicons.benchmark;
+
+import com.sdicons.bus.MessageBus;
+import com.sdicons.bus.Notify;
+import com.sdicons.prop.Property;
+import com.sdicons.prop.VetoablePropertyChangeEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Change the value of a property, with and without a veto pass before the change.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PropertyBenchmark
+{
+    /**
+     * Listens to the vetoable events, it never vetoes a change.
+     */
+    public static class VetoListener
+    {
+        private final Blackhole blackhole;
+
+        public VetoListener(Blackhole aBlackhole)
+        {
+            blackhole = aBlackhole;
+        }
+
+        @Notify
+        public void check(VetoablePropertyChangeEvent aEvent)
+        {
+            blackhole.consume(aEvent);
+        }
+    }
+
+    @Param({"false", "true"})
+    public boolean constrained;
+
+    private Property<Integer> property;
+    private Object changeListener;
+    private Object vetoListener;
+    private int value;
+
+    @Setup
+    public void setup(Blackhole aBlackhole)
+    {
+        final MessageBus lBus = new MessageBus();
+        changeListener = new Listeners.Change(aBlackhole);
+        vetoListener = new VetoListener(aBlackhole);
+        lBus.register(changeListener);
+        lBus.register(vetoListener);
+        property = new Property<Integer>("value", constrained, this, lBus, 0);
+    }
+
+    @Benchmark
+    public void setValue()
+    {
+        // Values outside of the integer cache, as they would be in real code.
+        property.setValue(1000 + (value++ & 1023));
+    }
+}
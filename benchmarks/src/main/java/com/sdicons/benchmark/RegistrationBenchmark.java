@@ -0,0 +1,96 @@
+/*
+ * Library "lib-messagebus".
+ * Copyright (c) 2011 Bruno Ranschaert, SDI-Consulting BVBA.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sdicons.benchmark;
+
+import com.sdicons.bus.MessageBus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.beans.PropertyChangeEvent;
+import java.util.ArrayList;
+import java.util.EventObject;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Register and unregister short lived subscribers on a bus that already has a number of long lived subscribers.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RegistrationBenchmark
+{
+    @Param({"0", "1000", "100000"})
+    public int subscribers;
+
+    private MessageBus bus;
+    private List<Object> stash;
+    private Blackhole blackhole;
+    private EventObject event;
+
+    @Setup
+    public void setup(Blackhole aBlackhole)
+    {
+        blackhole = aBlackhole;
+        bus = new MessageBus();
+        stash = new ArrayList<Object>(subscribers);
+        for (int i = 0; i < subscribers; i++)
+        {
+            final Object lListener = Listeners.create(i, aBlackhole);
+            stash.add(lListener);
+            bus.register(lListener);
+        }
+        event = new PropertyChangeEvent(this, "value", 0, 1);
+    }
+
+    @Benchmark
+    public void registerUnregister()
+    {
+        final Object lListener = new Listeners.Change(blackhole);
+        bus.register(lListener);
+        bus.unregister(lListener);
+    }
+
+    @Benchmark
+    public void registerPublishUnregister()
+    {
+        final Object lListener = new Listeners.Change(blackhole);
+        bus.register(lListener);
+        bus.publish(event);
+        bus.unregister(lListener);
+    }
+}
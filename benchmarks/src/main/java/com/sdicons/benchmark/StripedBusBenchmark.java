@@ -0,0 +1,122 @@
+/*
+ * Library "lib-messagebus".
+ * Copyright (c) 2011 Bruno Ranschaert, SDI-Consulting BVBA.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sdicons.benchmark;
+
+import com.sdicons.bus.MessageBus;
+import com.sdicons.bus.StripedMessageBus;
+import com.sdicons.prop.ChangeType;
+import com.sdicons.prop.ListPropertyChangeEvent;
+import com.sdicons.prop.SetPropertyChangeEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.beans.IndexedPropertyChangeEvent;
+import java.beans.PropertyChangeEvent;
+import java.util.EventObject;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Many threads publish on one bus, each thread publishes events of its own type. Compare a plain bus with a
+ * striped bus, and run with a growing number of threads to see how the throughput scales:
+ *
+ * <pre> java -jar target/benchmarks.jar StripedBusBenchmark -t 16</pre>
+ *
+ * The threads pick the event types round robin, with more threads than types some threads share a stripe.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StripedBusBenchmark
+{
+    /**
+     * The event of a single publisher thread.
+     */
+    @State(Scope.Thread)
+    public static class Publisher
+    {
+        public EventObject event;
+
+        @Setup
+        public void setup(StripedBusBenchmark aBenchmark)
+        {
+            event = aBenchmark.nextEvent();
+        }
+    }
+
+    // 0 is a plain message bus.
+    @Param({"0", "16"})
+    public int stripes;
+
+    // The capacity of the sticky cache, 0 if the bus is not sticky.
+    @Param({"0", "64"})
+    public int sticky;
+
+    private final AtomicInteger threads = new AtomicInteger();
+    private MessageBus bus;
+    private EventObject[] events;
+
+    @Setup
+    public void setup(Blackhole aBlackhole)
+    {
+        bus = (stripes == 0) ? new MessageBus() : new StripedMessageBus(stripes);
+        bus.setSticky(sticky);
+        for (int i = 0; i < 16; i++)
+        {
+            bus.register(Listeners.create(i, aBlackhole));
+        }
+        events = new EventObject[] {
+            new PropertyChangeEvent(this, "value", 0, 1),
+            new IndexedPropertyChangeEvent(this, "values", 0, 1, 0),
+            new ListPropertyChangeEvent(this, "list", "a", 0, ChangeType.INSERT),
+            new SetPropertyChangeEvent(this, "set", "b", ChangeType.INSERT),
+            new Listeners.CustomEvent(this),
+            new EventObject(this)
+        };
+    }
+
+    EventObject nextEvent()
+    {
+        return events[threads.getAndIncrement() % events.length];
+    }
+
+    @Benchmark
+    public void publish(Publisher aPublisher)
+    {
+        bus.publish(aPublisher.event);
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Library "lib-messagebus".
+ * Copyright (c) 2011 Bruno Ranschaert, SDI-Consulting BVBA.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sdicons.bus;
+
+import java.util.EventObject;
+import java.util.function.Predicate;
+
+/**
+ * A handler function that was subscribed on the bus. The function is called directly, there is no subscriber object
+ * and no handler method. The function is kept in a strong reference, the weak reference of the entry stays empty
+ * so the garbage collector has nothing to do for it. Closing the subscription clears the function, the entry is garbage afterwards.
+ */
+class FunctionalInfo
+extends SubscriberInfo
+{
+	// The handler, the result tells if it consumed the event. It is null once the subscription is closed.
+	volatile Predicate<Object> function;
+
+	FunctionalInfo(Class<?> aEventClass, Predicate<Object> aFunction, int aPriority, long aOrder)
+	{
+		super(new HandlerMethod(0, null, null, aEventClass, Object.class, true, null, aPriority), aOrder);
+		this.function = aFunction;
+	}
+
+	// The exceptions of the function are not wrapped, there is no reflection in between.
+	@Override
+	boolean notify(HandlerMethod aHandler, EventObject aEvent)
+	{
+		final Predicate<Object> lFunction = this.function;
+		return (lFunction != null) && lFunction.test(aEvent);
+	}
+
+	@Override
+	boolean isGarbage()
+	{
+		return this.function == null;
+	}
+
+	@Override
+	public void clear()
+	{
+		super.clear();
+		this.function = null;
+	}
+
+	@Override
+	boolean isForSpecifiedSubscriber(Object aSubscriber)
+	{
+		return false;
+	}
+}
@@ -0,0 +1,109 @@
+/*
+ * Library "lib-messagebus".
+ * Copyright (c) 2011 Bruno Ranschaert, SDI-Consulting BVBA.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sdicons.bus;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.EventObject;
+import java.util.List;
+
+/**
+ * Cache of the {@link HandlerMethod handler descriptions} per subscriber class. A class is scanned for
+ * {@link Notify annotated} methods only once, registering other instances of the same class re-uses the descriptions.
+ * The descriptions are kept in a {@link ClassValue} so the cache does not prevent classes from being unloaded.
+ * If the class has a {@link NotifyDispatcher generated dispatcher}, the descriptions are taken from the dispatcher
+ * and the class is not scanned at all.
+ */
+class HandlerCatalog
+{
+	// Creates the call sites for the handler methods.
+	private final HandlerInvokerFactory invokerFactory;
+	// Use the generated dispatchers if they are available?
+	private final boolean useDispatchers;
+
+	private final ClassValue<HandlerMethod[]> handlers = new ClassValue<HandlerMethod[]>()
+	{
+		@Override
+		protected HandlerMethod[] computeValue(Class<?> aClass)
+		{
+			return scan(aClass);
+		}
+	};
+
+	HandlerCatalog(HandlerInvokerFactory aInvokerFactory, boolean aUseDispatchers)
+	{
+		this.invokerFactory = aInvokerFactory;
+		this.useDispatchers = aUseDispatchers;
+	}
+
+	// Get the handlers of a subscriber class.
+	// The returned array is shared, it should not be modified.
+	HandlerMethod[] getHandlers(Class<?> aClass)
+	{
+		return this.handlers.get(aClass);
+	}
+
+	// Scan a class for annotated handler methods and verify their signature.
+	private HandlerMethod[] scan(Class<?> aClass)
+	{
+		if (this.useDispatchers)
+		{
+			final NotifyDispatcher lDispatcher = NotifyDispatcher.find(aClass);
+			if (lDispatcher != null)
+			{
+				return lDispatcher.getHandlers();
+			}
+		}
+
+		final List<HandlerMethod> lHandlers = new ArrayList<HandlerMethod>();
+		final Method[] lMethods = aClass.getMethods();
+		for (Method lMethod : lMethods)
+		{
+			final Notify lAnnot = lMethod.getAnnotation(Notify.class);
+			if (lAnnot != null)
+			{
+				final Class lParamTypes[] = lMethod.getParameterTypes();
+				if (lParamTypes.length == 1)
+				{
+					if (EventObject.class.isAssignableFrom(lParamTypes[0]))
+					{
+						final String lProperty = (lAnnot.property().length() == 0) ? null : lAnnot.property();
+						lHandlers.add(new HandlerMethod(lHandlers.size(), lMethod.getName(), this.invokerFactory.createInvoker(lMethod), lParamTypes[0], lAnnot.sourceType(), lAnnot.allowNullSource(), lProperty, lAnnot.priority()));
+					}
+					else
+					{
+						final String lMsg = "Class '%s' contains an annotated @Notify method '%s' with a parameter that is not an EventObject.";
+						throw new IllegalArgumentException(String.format(lMsg, aClass.getSimpleName(), lMethod.getName()));
+					}
+				}
+				else
+				{
+					final String lMsg = "Class '%s' contains an annotated @Notify method '%s' with the wrong number of arguments, only a single EventObject (or subclass) is allowed.";
+					throw new IllegalArgumentException(String.format(lMsg, aClass.getSimpleName(), lMethod.getName()));
+				}
+			}
+		}
+		return lHandlers.toArray(new HandlerMethod[lHandlers.size()]);
+	}
+}
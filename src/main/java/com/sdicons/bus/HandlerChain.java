@@ -0,0 +1,153 @@
+/*
+ * Library "lib-messagebus".
+ * Copyright (c) 2011 Bruno Ranschaert, SDI-Consulting BVBA.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sdicons.bus;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.ref.Reference;
+import java.lang.reflect.InvocationTargetException;
+import java.util.EventObject;
+import java.util.Objects;
+import java.util.function.Predicate;
+
+/**
+ * Compiles the handlers of a route into a single method handle with the signature <code>(EventObject, String)boolean</code>,
+ * the arguments are the event and its property name. The handle calls the handlers in delivery order and stops at the first one
+ * that consumes the event, exactly like the loop of the bus. Each handler is a constant in the chain, so once the JIT has
+ * customized the handle it can inline the handlers of the route in one piece instead of calling them through a shared call site.
+ *
+ * @see MessageBus#setCompiledDispatch(int)
+ */
+class HandlerChain
+{
+	// Longer routes are not compiled, the JIT stops inlining long before the end of such a chain.
+	static final int MAX_LENGTH = 16;
+
+	static final MethodType CHAIN_TYPE = MethodType.methodType(boolean.class, EventObject.class, String.class);
+	private static final MethodType CALL_TYPE = MethodType.methodType(boolean.class, Object.class, EventObject.class);
+
+	private static final MethodHandle TRUE = MethodHandles.dropArguments(MethodHandles.constant(boolean.class, true), 0, CHAIN_TYPE.parameterList());
+	private static final MethodHandle FALSE = MethodHandles.dropArguments(MethodHandles.constant(boolean.class, false), 0, CHAIN_TYPE.parameterList());
+	private static final MethodHandle NOT_CALLED = MethodHandles.dropArguments(MethodHandles.constant(boolean.class, false), 0, CALL_TYPE.parameterList());
+
+	// (Reference)Object, the subscriber of an entry.
+	private static final MethodHandle GET;
+	// (Object)boolean, the subscriber was collected.
+	private static final MethodHandle IS_NULL;
+	// (HandlerMethod, String)boolean, checks the property name of the event.
+	private static final MethodHandle ACCEPTS_PROPERTY;
+	// (HandlerInvoker, Object, EventObject)boolean, calls a handler method.
+	private static final MethodHandle INVOKE;
+	// (Predicate, Object)boolean, calls a subscribed function.
+	private static final MethodHandle TEST;
+	// (Throwable)boolean, wraps an exception of a handler method handle, like the invoker does.
+	private static final MethodHandle WRAP;
+	// (SubscriberInfo, HandlerMethod, Exception, Object, EventObject)boolean, reports a failed handler, like the entry does.
+	private static final MethodHandle FAILED;
+
+	static
+	{
+		try
+		{
+			final MethodHandles.Lookup lLookup = MethodHandles.lookup();
+			GET = lLookup.findVirtual(Reference.class, "get", MethodType.methodType(Object.class));
+			IS_NULL = lLookup.findStatic(Objects.class, "isNull", MethodType.methodType(boolean.class, Object.class));
+			ACCEPTS_PROPERTY = lLookup.findVirtual(HandlerMethod.class, "acceptsProperty", MethodType.methodType(boolean.class, String.class));
+			INVOKE = lLookup.findVirtual(HandlerInvoker.class, "invoke", CALL_TYPE);
+			TEST = lLookup.findVirtual(Predicate.class, "test", MethodType.methodType(boolean.class, Object.class));
+			WRAP = lLookup.findStatic(HandlerChain.class, "wrap", MethodType.methodType(boolean.class, Throwable.class));
+			FAILED = lLookup.findStatic(HandlerChain.class, "failed", MethodType.methodType(boolean.class, SubscriberInfo.class, HandlerMethod.class, Exception.class, Object.class, EventObject.class));
+		}
+		catch (Exception e)
+		{
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	private HandlerChain()
+	{
+	}
+
+	// Compile the handlers, they should be in delivery order and they should not be bound to a source.
+	static MethodHandle compile(HandlerList aHandlers)
+	{
+		MethodHandle lChain = FALSE;
+		for (int i = aHandlers.size() - 1; i >= 0; i--)
+		{
+			// The handler consumes the event or the rest of the chain is tried.
+			lChain = MethodHandles.guardWithTest(step(aHandlers.infos[i], aHandlers.handlers[i]), TRUE, lChain);
+		}
+		return lChain;
+	}
+
+	// A single handler, (EventObject, String)boolean.
+	private static MethodHandle step(SubscriberInfo aInfo, HandlerMethod aHandler)
+	{
+		MethodHandle lStep;
+		if (aInfo instanceof FunctionalInfo)
+		{
+			// A closed subscription is skipped, the route leaves it out the next time it is used.
+			final Predicate<Object> lFunction = ((FunctionalInfo) aInfo).function;
+			lStep = (lFunction == null) ? FALSE :
+				MethodHandles.dropArguments(TEST.bindTo(lFunction).asType(MethodType.methodType(boolean.class, EventObject.class)), 1, String.class);
+		}
+		else
+		{
+			// Skip the handler if the subscriber was collected, the entry is removed later on.
+			final MethodHandle lCall = MethodHandles.guardWithTest(MethodHandles.dropArguments(IS_NULL, 1, EventObject.class), NOT_CALLED, call(aInfo, aHandler));
+			lStep = MethodHandles.dropArguments(MethodHandles.collectArguments(lCall, 0, GET.bindTo(aInfo)), 1, String.class);
+		}
+
+		if (aHandler.property != null)
+		{
+			final MethodHandle lAccepts = MethodHandles.dropArguments(ACCEPTS_PROPERTY.bindTo(aHandler), 0, EventObject.class);
+			lStep = MethodHandles.guardWithTest(lAccepts, lStep, FALSE);
+		}
+		return lStep;
+	}
+
+	// The call of the handler method on the subscriber, (Object, EventObject)boolean.
+	// The invokers of the method handle factory are unwrapped, the JIT can inline the handle of the method.
+	private static MethodHandle call(SubscriberInfo aInfo, HandlerMethod aHandler)
+	{
+		final HandlerInvoker lInvoker = aHandler.invoker;
+		final MethodHandle lHandle = MethodHandleInvokerFactory.handleOf(lInvoker);
+		final MethodHandle lCall = (lHandle == null) ?
+			INVOKE.bindTo(lInvoker) :
+			MethodHandles.catchException(lHandle, Throwable.class, MethodHandles.dropArguments(WRAP, 1, CALL_TYPE.parameterList()));
+		return MethodHandles.catchException(lCall, Exception.class, MethodHandles.insertArguments(FAILED, 0, aInfo, aHandler));
+	}
+
+	private static boolean wrap(Throwable aError)
+	throws InvocationTargetException
+	{
+		throw new InvocationTargetException(aError);
+	}
+
+	private static boolean failed(SubscriberInfo aInfo, HandlerMethod aHandler, Exception aError, Object aSubscriber, EventObject aEvent)
+	{
+		throw aInfo.failure(aHandler, aSubscriber, aError);
+	}
+}
@@ -0,0 +1,49 @@
+/*
+ * Library "lib-messagebus".
+ * Copyright (c) 2011 Bruno Ranschaert, SDI-Consulting BVBA.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sdicons.bus;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.EventObject;
+
+/**
+ * A call site for a single {@link Notify annotated} handler method. The bus creates an invoker for each handler
+ * at registration time using a {@link HandlerInvokerFactory}, so that publishing an event does not have to go through
+ * the generic reflection machinery.
+ *
+ * @see HandlerInvokerFactory
+ */
+public interface HandlerInvoker
+{
+    /**
+     * Call the handler on a subscriber.
+     *
+     * @param aSubscriber The bean that contains the handler method.
+     * @param aEvent The event, it is accepted by the handler.
+     * @return True if the handler returned a boolean 'true', meaning that the event was consumed.
+     * @throws InvocationTargetException If the handler itself threw an exception, it is wrapped.
+     * @throws IllegalAccessException If the handler cannot be called.
+     */
+    boolean invoke(Object aSubscriber, EventObject aEvent)
+    throws InvocationTargetException, IllegalAccessException;
+}
@@ -0,0 +1,151 @@
+/*
+ * Library "lib-messagebus".
+ * Copyright (c) 2011 Bruno Ranschaert, SDI-Consulting BVBA.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sdicons.bus;
+
+import java.util.Arrays;
+import java.util.EventObject;
+
+/**
+ * Handlers in delivery order. A handler is one of the handler methods of a registered subscriber, the list keeps the
+ * entries of the subscribers and the descriptions of the handler methods in two parallel arrays. There is no object per handler,
+ * a subscriber with several handlers appears several times in the list with another description.
+ * The lists are immutable, they are shared by the publishers.
+ */
+class HandlerList
+{
+	static final HandlerList EMPTY = new HandlerList(new SubscriberInfo[0], new HandlerMethod[0]);
+
+	// The subscriber of each handler.
+	final SubscriberInfo[] infos;
+	// The description of each handler, it is one of the handlers of its subscriber.
+	final HandlerMethod[] handlers;
+
+	private HandlerList(SubscriberInfo[] aInfos, HandlerMethod[] aHandlers)
+	{
+		this.infos = aInfos;
+		this.handlers = aHandlers;
+	}
+
+	int size()
+	{
+		return this.infos.length;
+	}
+
+	// Check if a handler of this list is called before a handler of the other list.
+	boolean precedes(int aIndex, HandlerList aOther, int aOtherIndex)
+	{
+		return this.infos[aIndex].precedes(this.handlers[aIndex], aOther.infos[aOtherIndex], aOther.handlers[aOtherIndex]);
+	}
+
+	// Check if a handler accepts an event of the specified class and property, coming from the specified source.
+	// The handler should be bound to a source.
+	boolean acceptsBound(int aIndex, Object aSource, Class<?> aEventClass, String aProperty)
+	{
+		return this.infos[aIndex].acceptsBound(this.handlers[aIndex], aSource, aEventClass, aProperty);
+	}
+
+	// Call a handler, the result tells if it consumed the event.
+	boolean notify(int aIndex, EventObject aEvent)
+	{
+		return this.infos[aIndex].notify(this.handlers[aIndex], aEvent);
+	}
+
+	// Collects handlers, they should be added in registration order.
+	static class Builder
+	{
+		private SubscriberInfo[] infos = new SubscriberInfo[8];
+		private HandlerMethod[] handlers = new HandlerMethod[8];
+		private int size = 0;
+		// Is there more than one priority?
+		private boolean mixed = false;
+
+		void add(SubscriberInfo aInfo, HandlerMethod aHandler)
+		{
+			if (this.size == this.infos.length)
+			{
+				this.infos = Arrays.copyOf(this.infos, this.size << 1);
+				this.handlers = Arrays.copyOf(this.handlers, this.size << 1);
+			}
+			this.mixed |= (this.size > 0) && (aHandler.priority != this.handlers[0].priority);
+			this.infos[this.size] = aInfo;
+			this.handlers[this.size++] = aHandler;
+		}
+
+		// Add all handlers of a subscriber.
+		void addAll(SubscriberInfo aInfo)
+		{
+			for (HandlerMethod lHandler : aInfo.handlers)
+			{
+				add(aInfo, lHandler);
+			}
+		}
+
+		int size()
+		{
+			return this.size;
+		}
+
+		// The list in delivery order. The handlers are in registration order already, they only have to be
+		// sorted on their priority and the sort has to keep the registration order for the same priority.
+		HandlerList build()
+		{
+			if (this.size == 0)
+			{
+				return EMPTY;
+			}
+			if (!this.mixed)
+			{
+				return new HandlerList(Arrays.copyOf(this.infos, this.size), Arrays.copyOf(this.handlers, this.size));
+			}
+
+			final SubscriberInfo[] lInfos = new SubscriberInfo[this.size];
+			final HandlerMethod[] lHandlers = new HandlerMethod[this.size];
+			int lPos = 0;
+			// Take the handlers of the highest priority that is left in each pass, there are only a few different priorities.
+			long lBelow = Long.MAX_VALUE;
+			while (lPos < this.size)
+			{
+				int lPriority = Integer.MIN_VALUE;
+				for (int i = 0; i < this.size; i++)
+				{
+					final int lNext = this.handlers[i].priority;
+					if ((lNext < lBelow) && (lNext > lPriority))
+					{
+						lPriority = lNext;
+					}
+				}
+				for (int i = 0; i < this.size; i++)
+				{
+					if (this.handlers[i].priority == lPriority)
+					{
+						lInfos[lPos] = this.infos[i];
+						lHandlers[lPos++] = this.handlers[i];
+					}
+				}
+				lBelow = lPriority;
+			}
+			return new HandlerList(lInfos, lHandlers);
+		}
+	}
+}
@@ -0,0 +1,86 @@
+/*
+ * Library "lib-messagebus".
+ * Copyright (c) 2011 Bruno Ranschaert, SDI-Consulting BVBA.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sdicons.bus;
+
+/**
+ * Description of a single {@link Notify annotated} handler method of a subscriber class.
+ * The description does not depend on a subscriber instance, it is shared by all instances of the class.
+ *
+ * @see HandlerCatalog
+ * @see NotifyDispatcher
+ */
+class HandlerMethod
+{
+	// The property name of a property change event without name, it means that any of the properties might have changed.
+	// It is compared on identity, it does not clash with a property that happens to have the same name.
+	static final String ALL_PROPERTIES = new String("*");
+
+	// The position of the handler in the handlers of its class, the handlers of a subscriber are registered in this order.
+	final int index;
+	// The name of the handler method, for the error messages.
+	final String name;
+	// The call site for the handler method.
+	final HandlerInvoker invoker;
+	// The event type accepted by the handler.
+	final Class<?> parameterType;
+	// The sender type accepted by the handler.
+	final Class<?> sourceType;
+	// Does the handler accept messages with unknown message source?
+	final boolean allowNullSource;
+	// The name of the property the handler is interested in, null if it wants to see all events.
+	final String property;
+	// Handlers with a higher priority are called first.
+	final int priority;
+
+	HandlerMethod(int aIndex, String aName, HandlerInvoker aInvoker, Class<?> aParameterType, Class<?> aSourceType, boolean aAllowNullSource, String aProperty, int aPriority)
+	{
+		this.index = aIndex;
+		this.name = aName;
+		this.invoker = aInvoker;
+		this.parameterType = aParameterType;
+		this.sourceType = aSourceType;
+		this.allowNullSource = aAllowNullSource;
+		this.property = aProperty;
+		this.priority = aPriority;
+	}
+
+	// Check if the handler accepts events of the specified class coming from a source of the specified class.
+	// The source class is null if the event has no source.
+	boolean accepts(Class<?> aEventClass, Class<?> aSourceClass)
+	{
+		if (this.parameterType.isAssignableFrom(aEventClass))
+		{
+			return ((aSourceClass == null) && this.allowNullSource) ||
+				((aSourceClass != null) && this.sourceType.isAssignableFrom(aSourceClass));
+		}
+		return false;
+	}
+
+	// Check if the handler accepts events about the specified property, the name is null if the event is not about a property.
+	// A change of all properties is accepted by every handler.
+	boolean acceptsProperty(String aProperty)
+	{
+		return (this.property == null) || (aProperty == ALL_PROPERTIES) || this.property.equals(aProperty);
+	}
+}
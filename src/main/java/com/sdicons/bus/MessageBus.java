@@ -23,15 +23,32 @@
 
 package com.sdicons.bus;
 
-import com.sdicons.prop.PropertyVetoException;
+import com.sdicons.prop.AbstractCollectionPropertyChangeEvent;
+import com.sdicons.prop.VetoableEvent;
+import com.sdicons.prop.VetoableIndexedPropertyChangeEvent;
+import com.sdicons.prop.VetoablePropertyChangeEvent;
 
+import java.beans.PropertyChangeEvent;
+import java.lang.invoke.MethodHandle;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.EventObject;
-import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 /**
  * <p>The message bus is an alternative mechanism for the event and event listener mechanism in JavaBeans, Swing, e.a.
@@ -42,6 +59,10 @@ import java.util.List;
  * <p>Bus listeners are stored as weak references, so the bus will never prevent a listener from being garbage collected.
  * The bus cannot be the cause of a memory leak.
  * 
+ * <p>The bus can be used from multiple threads. Publishing an event does not take a lock, the handlers are looked up in
+ * an immutable snapshot of the registered subscribers. Registering or unregistering a subscriber replaces the snapshot,
+ * a publication that is in progress will not see the change.
+ * 
  * <p>The bus itself is not serializable, it is transient in all Property implementations. The bus is a communications medium, if a model object is restored from a stream, it should
  * get the active message bus, not the old serialized one. A model that uses a message bus should provide methods to set a new message bus.
  * 
@@ -56,234 +77,1841 @@ import java.util.List;
  */
 public class MessageBus
 {
-	// Data structure to keep track of a bus listener.
-	private static class SubscriberInfo
-	{
-		// We keep the listener in a weak reference so that the bus
-		// does not prevent garbage collection. This is to prevent memory leaks.
-		private WeakReference<Object> subscriberRef;
-		// The handler method to be called.
-		private Method method;
-		// The event type accepted by the handler.
-		private Class<?> parameterType;
-		// The sender type accepted by the handler.
-		private Class<?> sourceType;
-		// Does the handler accept messages with unknown message source?
-		private boolean allowNullSource;
-		
-		private SubscriberInfo(Object aSubscriber, Method aMethod, Class<?> aParameterType, Class<?> aSourceType, boolean aAllowNullSource)
-		{
-			this.subscriberRef = new WeakReference<Object>(aSubscriber);
-			this.method = aMethod;
-			this.parameterType = aParameterType;
-			this.sourceType = aSourceType;
-			this.allowNullSource = aAllowNullSource;
-		}
-
-		// Conditionally call a handler with the specified event.
-		// If all conditions are met the handler will be called, otherwise the
-		// method will do nothing.
-		public boolean notify(EventObject aEvent)
-		{
-			final Object lSubscriber = this.subscriberRef.get();
-			if (lSubscriber != null)
+	// The handlers that accept a combination of event class and source class, in delivery order.
+	// Handlers that are only interested in a single property are found in a hash table on the property name.
+	private static class Route
+	{
+		// The handlers that do not filter on the property name.
+		private final HandlerList any;
+		// For each property name that is filtered on, the handlers without filter together with the handlers for the name.
+		// The table is null if none of the handlers filters on the property name.
+		private final Map<String, HandlerList> byProperty;
+		// All handlers in delivery order, for the changes of all properties.
+		private final HandlerList all;
+		// All handlers in delivery order if the route can be compiled, null if there are none or too many.
+		private final HandlerList matches;
+		// The number of publications through the route before it was compiled. Concurrent updates might get lost, it is only a hint.
+		private int publications;
+		// The compiled handlers, null until the route becomes hot.
+		private volatile MethodHandle chain;
+		// The number of unbound observers that were checked. The route stays valid when observers are added
+		// that do not accept its events, the number only grows.
+		private volatile int covered;
+		// The number of removals of the snapshot the route was checked against, the route stays valid when
+		// the removed observers are not in it.
+		private volatile int removals;
+
+		// The matches should be in delivery order.
+		private Route(HandlerList aMatches, int aCovered, int aRemovals)
+		{
+			this.covered = aCovered;
+			this.removals = aRemovals;
+			this.all = aMatches;
+			this.matches = ((aMatches.size() == 0) || (aMatches.size() > HandlerChain.MAX_LENGTH)) ? null : aMatches;
+			final HandlerList.Builder lAny = new HandlerList.Builder();
+			Set<String> lProperties = null;
+			for (int i = 0; i < aMatches.size(); i++)
 			{
-				try
+				final String lProperty = aMatches.handlers[i].property;
+				if (lProperty == null)
 				{
-					if (this.parameterType.isAssignableFrom(aEvent.getClass()))
-					{
-						Object lSource = aEvent.getSource();
-						if (((lSource == null) && this.allowNullSource) || 
-							((lSource != null) && this.sourceType.isAssignableFrom(lSource.getClass())))
-						{
-							// Invoke the notification method and remember the result.
-							final Object lResult = this.method.invoke(lSubscriber, aEvent);
-							// If the notification method gave us a boolean, we will interpret this value,
-							// if we got 'true' this means that the event was handled completely, no other handlers will be invoked.
-							// If we got a 'false' this means that we have to continue invoking the other handlers.
-							return (lResult instanceof Boolean) && (Boolean)lResult;
-						}
-					}
+					lAny.add(aMatches.infos[i], aMatches.handlers[i]);
 				}
-				catch (InvocationTargetException e)
+				else
 				{
-					if (e.getTargetException() instanceof PropertyVetoException)
-					{
-						throw (PropertyVetoException)e.getTargetException();
-					}
-					else
+					if (lProperties == null)
 					{
-						final String lMsg = "Error while invoking notification method '%s' on an instance of class '%s'.";
-						throw new RuntimeException(String.format(lMsg, this.method.getName(), lSubscriber.getClass().getSimpleName()), e);
+						lProperties = new HashSet<String>();
 					}
+					lProperties.add(lProperty);
 				}
-				catch (Exception e)
+			}
+			this.any = (lAny.size() == aMatches.size()) ? aMatches : lAny.build();
+
+			if (lProperties == null)
+			{
+				this.byProperty = null;
+			}
+			else
+			{
+				this.byProperty = new HashMap<String, HandlerList>();
+				for (String lProperty : lProperties)
 				{
-					final String lMsg = "Error while invoking notification method '%s' on an instance of class '%s'.";
-					throw new RuntimeException(String.format(lMsg, this.method.getName(), lSubscriber.getClass().getSimpleName()), e);
+					final HandlerList.Builder lHandlers = new HandlerList.Builder();
+					for (int i = 0; i < aMatches.size(); i++)
+					{
+						final String lFilter = aMatches.handlers[i].property;
+						if ((lFilter == null) || lProperty.equals(lFilter))
+						{
+							lHandlers.add(aMatches.infos[i], aMatches.handlers[i]);
+						}
+					}
+					this.byProperty.put(lProperty, lHandlers.build());
 				}
 			}
-			return false;
 		}
 
-		// Check if the object that wants to receive notifications is 
-		// garbage  collected, and is no longer available.
-		public boolean isGarbage()
+		// The handlers for an event with the specified property name, the name is null for events that are not about a property.
+		private HandlerList select(String aProperty)
 		{
-			return this.subscriberRef.get() == null;
+			if (aProperty == HandlerMethod.ALL_PROPERTIES)
+			{
+				return this.all;
+			}
+			if ((this.byProperty != null) && (aProperty != null))
+			{
+				final HandlerList lHandlers = this.byProperty.get(aProperty);
+				if (lHandlers != null)
+				{
+					return lHandlers;
+				}
+			}
+			return this.any;
 		}
 
-		public boolean isForSpecifiedSubscriber(Object aSubscriber)
+		// The compiled handlers of the route, null if the route was used less than the specified number of times.
+		// Concurrent publishers might compile the same route, they will come to the same result.
+		private MethodHandle hotChain(int aThreshold)
 		{
-			final Object lSubscriber = this.subscriberRef.get();
-			return lSubscriber == aSubscriber;
+			final MethodHandle lChain = this.chain;
+			if ((lChain != null) || (this.matches == null))
+			{
+				return lChain;
+			}
+			if (++this.publications >= aThreshold)
+			{
+				final MethodHandle lCompiled = HandlerChain.compile(this.matches);
+				this.chain = lCompiled;
+				return lCompiled;
+			}
+			return null;
 		}
 	}
 
-	// The list containing the observers.
-	private List<SubscriberInfo> subscriberInfos = new LinkedList<SubscriberInfo>();
-	
-	// The parent bus.
-	private MessageBus parentBus;
+	// Numbers the event classes and the source classes of the events that were published on a bus. The classes only keep
+	// their number, so the bus does not keep the classes and their class loaders alive, and the classes do not keep the bus alive.
+	// A number might be skipped if two threads see a class for the first time, the one that loses the race leaves a hole.
+	private static class ClassNumbers
+	{
+		private final AtomicInteger nrEventClasses = new AtomicInteger();
+		// Number 0 is for the events without source.
+		private final AtomicInteger nrSourceClasses = new AtomicInteger(1);
+		private final ClassValue<Integer> eventClasses = new ClassValue<Integer>()
+		{
+			protected Integer computeValue(Class<?> aEventClass)
+			{
+				return nrEventClasses.getAndIncrement();
+			}
+		};
+		private final ClassValue<Integer> sourceClasses = new ClassValue<Integer>()
+		{
+			protected Integer computeValue(Class<?> aSourceClass)
+			{
+				return nrSourceClasses.getAndIncrement();
+			}
+		};
+	}
 
-	/**
-	 * Construct a message bus that is connected to a parent bus. Messages will be sent to the parent
-	 * bus as well. This makes it possible to create a hierarchy of messages busses. Messages published
-	 * on the children will reach the parent bus, but parent messages will not be sent to the children.
-	 * This can be used to reduce the traffic on the bus.
-	 * 
-	 * @param aParent  A parent bus, events will be sent to the parent bus as well.
-	 */
-	public MessageBus(MessageBus aParent)
+	// Maps the concrete event class and the concrete source class on the route of the handlers that accept these.
+	// There is a row for each event class and a column for each source class, they are found with the numbers of the classes.
+	// The rows and the routes of a row are replaced as a whole, readers do not lock.
+	private static class DispatchTable
 	{
-		this.parentBus = aParent;
+		// The routes of an event class, per column.
+		private static class Row
+		{
+			// Is there a handler that accepts events of the class? Null until somebody asks.
+			private volatile Interest interest;
+			private volatile Route[] routes = new Route[0];
+
+			// The route for the sources of a column, null if it was not looked up yet.
+			private Route route(int aColumn)
+			{
+				final Route[] lRoutes = this.routes;
+				return (aColumn < lRoutes.length) ? lRoutes[aColumn] : null;
+			}
+
+			// Concurrent publishers might store the same route, they will come to the same result.
+			private synchronized void put(int aColumn, Route aRoute)
+			{
+				final Route[] lRoutes = Arrays.copyOf(this.routes, Math.max(this.routes.length, aColumn + 1));
+				lRoutes[aColumn] = aRoute;
+				this.routes = lRoutes;
+			}
+		}
+
+		// The numbers are shared by the tables of a bus.
+		private final ClassNumbers numbers;
+		private volatile Row[] rows = new Row[0];
+
+		private DispatchTable(ClassNumbers aNumbers)
+		{
+			this.numbers = aNumbers;
+		}
+
+		// The row of an event class, it is created the first time the class is seen.
+		private Row row(Class<?> aEventClass)
+		{
+			final int lNumber = this.numbers.eventClasses.get(aEventClass);
+			final Row[] lRows = this.rows;
+			final Row lRow = (lNumber < lRows.length) ? lRows[lNumber] : null;
+			return (lRow != null) ? lRow : addRow(lNumber);
+		}
+
+		private synchronized Row addRow(int aNumber)
+		{
+			if ((aNumber < this.rows.length) && (this.rows[aNumber] != null))
+			{
+				return this.rows[aNumber];
+			}
+			final Row[] lRows = Arrays.copyOf(this.rows, Math.max(this.rows.length, aNumber + 1));
+			lRows[aNumber] = new Row();
+			this.rows = lRows;
+			return lRows[aNumber];
+		}
+
+		// The column of a source class, the source class is null if the event has no source.
+		private int column(Class<?> aSourceClass)
+		{
+			return (aSourceClass == null) ? 0 : this.numbers.sourceClasses.get(aSourceClass);
+		}
 	}
 
-	/**
-	 * Create a message bus.
-	 */
-	public MessageBus()
+	// The answer to the question if one of the first observers of a snapshot accepts events of a class.
+	private static class Interest
 	{
-		this(null);
+		// The number of unbound and bound observers that were checked.
+		private final int unbound;
+		private final int bound;
+		// The number of removals of the snapshot.
+		private final int removals;
+		private final boolean interested;
+
+		private Interest(int aUnbound, int aBound, int aRemovals, boolean aInterested)
+		{
+			this.unbound = aUnbound;
+			this.bound = aBound;
+			this.removals = aRemovals;
+			this.interested = aInterested;
+		}
 	}
 
-	/**
-	 * Register a bean as a subscriber. The bus will scan the bean for {@link Notify annotated} methods and these
-	 * methods will be called when a corresponding message is {@link #publish(EventObject) published} on the bus.
-	 * 
-	 * @param aSubscriber A POJO containing annotated call back methods.
-	 * @see #unregister(Object)
-	 * @see Notify
-	 */
-	public void register(Object aSubscriber)
+	// The observers that are bound to a source instance, in an open addressing table on the identity hash of the source.
+	// A slot holds the handlers of all sources with that hash in delivery order.
+	private static class BoundTable
 	{
-		final Method[] lMethods = aSubscriber.getClass().getMethods();
-		for (Method lMethod : lMethods)
+		private final int[] hashes;
+		private final HandlerList[] handlers;
+
+		// The observers should be in registration order.
+		private BoundTable(SubscriberInfo[] aInfos, int aSize)
 		{
-			final Notify lAnnot = lMethod.getAnnotation(Notify.class);
-			if (lAnnot != null)
+			final Map<Integer, HandlerList.Builder> lBound = new HashMap<Integer, HandlerList.Builder>();
+			for (int i = 0; i < aSize; i++)
 			{
-				final Class lParamTypes[] = lMethod.getParameterTypes();
-				if (lParamTypes.length == 1)
+				final SubscriberInfo lInfo = aInfos[i];
+				HandlerList.Builder lSameHash = lBound.get(lInfo.sourceHash);
+				if (lSameHash == null)
 				{
-					if (EventObject.class.isAssignableFrom(lParamTypes[0]))
-					{
-						this.subscriberInfos.add(new SubscriberInfo(aSubscriber, lMethod, lParamTypes[0], lAnnot.sourceType(), lAnnot.allowNullSource()));
-					}
-					else
-					{
-						final String lMsg = "Class '%s' contains an annotated @Notify method '%s' with a parameter that is not an EventObject.";
-						throw new IllegalArgumentException(String.format(lMsg, aSubscriber.getClass().getSimpleName(), lMethod.getName()));
-					}
+					lSameHash = new HandlerList.Builder();
+					lBound.put(lInfo.sourceHash, lSameHash);
 				}
-				else
+				lSameHash.addAll(lInfo);
+			}
+
+			// At most half of the slots are used.
+			final int lCapacity = Integer.highestOneBit((lBound.size() << 1) - 1) << 1;
+			this.hashes = new int[lCapacity];
+			this.handlers = new HandlerList[lCapacity];
+			for (Map.Entry<Integer, HandlerList.Builder> lEntry : lBound.entrySet())
+			{
+				final int lHash = lEntry.getKey();
+				int lSlot = spread(lHash) & (lCapacity - 1);
+				while (this.handlers[lSlot] != null)
 				{
-					final String lMsg = "Class '%s' contains an annotated @Notify method '%s' with the wrong number of arguments, only a single EventObject (or subclass) is allowed.";
-					throw new IllegalArgumentException(String.format(lMsg, aSubscriber.getClass().getSimpleName(), lMethod.getName()));
+					lSlot = (lSlot + 1) & (lCapacity - 1);
 				}
+				this.hashes[lSlot] = lHash;
+				this.handlers[lSlot] = lEntry.getValue().build();
 			}
 		}
 
-		// Do some cleanup.
-		cleanGarbageInfos();
+		// The handlers that are bound to the source, or to another source with the same identity hash.
+		private HandlerList get(Object aSource)
+		{
+			final int lHash = System.identityHashCode(aSource);
+			final int lMask = this.handlers.length - 1;
+			for (int lSlot = spread(lHash) & lMask; this.handlers[lSlot] != null; lSlot = (lSlot + 1) & lMask)
+			{
+				if (this.hashes[lSlot] == lHash)
+				{
+					return this.handlers[lSlot];
+				}
+			}
+			return HandlerList.EMPTY;
+		}
 	}
 
-	/**
-	 * Remove a bean as a listener. The bean will no longer receive messages published on the bus.
-	 * 
-	 * @param aSubscriber The POJO to be removed from the bus.
-	 * @see #register(Object)
-	 */
-	public void unregister(Object aSubscriber)
+	// Immutable view on the observers. Publishers use a snapshot without locking, changes to the observers replace the
+	// snapshot of the bus. A registration puts the new observer after the end of the arrays of the previous snapshot,
+	// the older snapshots do not see these slots. Removed observers stay in the arrays until more than half of them are removed,
+	// the publishers skip them. The snapshots share the dispatch table, a route remembers how many observers it has seen and
+	// how many removals, it is brought up to date the next time it is used. A snapshot without the removed observers starts a new table.
+	private static class Snapshot
 	{
-		final Iterator<SubscriberInfo> lIter = this.subscriberInfos.iterator();
-		while (lIter.hasNext())
+		// The observers that are not bound to a source instance, in registration order. Only the first slots belong to the snapshot.
+		private final SubscriberInfo[] unbound;
+		private final int nrUnbound;
+		// The observers that are bound to a source instance, in registration order. Only the first slots belong to the snapshot.
+		private final SubscriberInfo[] bound;
+		private final int nrBound;
+		// The handlers per event class and source class, it is filled lazily when events are published.
+		private final DispatchTable dispatchTable;
+		// The bound observers on the identity hash of their source, null until a bound handler is looked up.
+		private volatile BoundTable boundTable;
+		// The number of times observers were removed since the dispatch table was started.
+		private final int removals;
+
+		private Snapshot(SubscriberInfo[] aUnbound, int aNrUnbound, SubscriberInfo[] aBound, int aNrBound, DispatchTable aDispatchTable, BoundTable aBoundTable, int aRemovals)
+		{
+			this.unbound = aUnbound;
+			this.nrUnbound = aNrUnbound;
+			this.bound = aBound;
+			this.nrBound = aNrBound;
+			this.dispatchTable = aDispatchTable;
+			this.boundTable = aBoundTable;
+			this.removals = aRemovals;
+		}
+
+		// A snapshot of the observers in registration order, with a new dispatch table.
+		private static Snapshot of(SubscriberInfo[] aInfos, ClassNumbers aNumbers)
 		{
-			final SubscriberInfo lInfo = lIter.next();
-			if (lInfo.isGarbage() || lInfo.isForSpecifiedSubscriber(aSubscriber))
+			final SubscriberInfo[] lUnbound = new SubscriberInfo[aInfos.length];
+			final SubscriberInfo[] lBound = new SubscriberInfo[aInfos.length];
+			int lNrUnbound = 0;
+			int lNrBound = 0;
+			for (SubscriberInfo lInfo : aInfos)
 			{
-				lIter.remove();
+				if (lInfo.source == null)
+				{
+					lUnbound[lNrUnbound++] = lInfo;
+				}
+				else
+				{
+					lBound[lNrBound++] = lInfo;
+				}
 			}
+			return new Snapshot(lUnbound, lNrUnbound, lBound, lNrBound, new DispatchTable(aNumbers), null, 0);
 		}
-	}
 
-	/**
-	 * <p>Publish an event on the message bus. All {@link #register(Object) registered} handlers that are interested in this
-	 * event will be called.
-	 * 
-	 * <p>All events should be derived from the standard Java java.util.EventObject as all events are. This is not really a restriction since
-    * it contains the source of the event (which can be null), and we can filter on the type of this.
-	 * 
-	 * @param aEvent The event to be published on the bus.
-	 */
-	public void publish(EventObject aEvent)
-	{
-		boolean lHandled = false;
-		final Iterator<SubscriberInfo> lIter = this.subscriberInfos.iterator();
-		while (lIter.hasNext())
+		// The snapshot with one more observer, it keeps the dispatch table. Only the latest snapshot of a bus
+		// can be extended, otherwise two snapshots would use the same slot. The bus lock guards this.
+		private Snapshot with(SubscriberInfo aInfo)
 		{
-			final SubscriberInfo lInfo = lIter.next();
-			if (lInfo.isGarbage())
+			if (aInfo.source == null)
 			{
-				lIter.remove();
+				return new Snapshot(append(this.unbound, this.nrUnbound, aInfo), this.nrUnbound + 1, this.bound, this.nrBound, this.dispatchTable, this.boundTable, this.removals);
 			}
-			else if (!lHandled)
+			return new Snapshot(this.unbound, this.nrUnbound, append(this.bound, this.nrBound, aInfo), this.nrBound + 1, this.dispatchTable, null, this.removals);
+		}
+
+		// The snapshot after observers were removed, their entries are garbage now. The routes and the answers
+		// about the interest in an event class see the new number of removals and they are checked again.
+		private Snapshot afterRemoval()
+		{
+			return new Snapshot(this.unbound, this.nrUnbound, this.bound, this.nrBound, this.dispatchTable, this.boundTable, this.removals + 1);
+		}
+
+		// Put an observer in the first free slot, the array is copied if it is full.
+		private static SubscriberInfo[] append(SubscriberInfo[] aInfos, int aSize, SubscriberInfo aInfo)
+		{
+			final SubscriberInfo[] lInfos = (aSize < aInfos.length) ? aInfos : Arrays.copyOf(aInfos, Math.max(8, aSize << 1));
+			lInfos[aSize] = aInfo;
+			return lInfos;
+		}
+
+		// The number of observers, including the removed ones.
+		private int size()
+		{
+			return this.nrUnbound + this.nrBound;
+		}
+
+		// Check if one of the observers accepts events of the specified class, the other filters are not taken into account.
+		// Observers that were collected after the question was answered might still count.
+		private boolean isInterested(Class<?> aEventClass)
+		{
+			final DispatchTable.Row lRow = this.dispatchTable.row(aEventClass);
+			final Interest lInterest = lRow.interest;
+			// Adding observers can only turn the answer into yes, removing them can only turn it into no.
+			if ((lInterest != null) && (lInterest.interested ? (lInterest.removals >= this.removals) : ((lInterest.unbound >= this.nrUnbound) && (lInterest.bound >= this.nrBound))))
 			{
-				lHandled = lInfo.notify(aEvent);
+				return lInterest.interested;
 			}
+
+			// After a no only the observers that were added since have to be checked.
+			final boolean lAdded = (lInterest != null) && !lInterest.interested;
+			final boolean lInterested = accepts(this.unbound, lAdded ? lInterest.unbound : 0, this.nrUnbound, aEventClass)
+				|| accepts(this.bound, lAdded ? lInterest.bound : 0, this.nrBound, aEventClass);
+			lRow.interest = new Interest(this.nrUnbound, this.nrBound, this.removals, lInterested);
+			return lInterested;
 		}
 
-		// Ripple the event to the parent.
-		if (!lHandled && (this.parentBus != null))
+		// Check if one of the observers in a range of the array accepts events of the specified class.
+		private static boolean accepts(SubscriberInfo[] aInfos, int aFrom, int aTo, Class<?> aEventClass)
 		{
-			this.parentBus.publish(aEvent);
+			for (int i = aFrom; i < aTo; i++)
+			{
+				if (acceptsClass(aInfos[i], aEventClass) && !aInfos[i].isGarbage())
+				{
+					return true;
+				}
+			}
+			return false;
 		}
-	}
 
-	// Remove all handler information concerning garbage collected listeners
-	// from our listener list. We don't need these anymore, removing them
-	// from the list from time to time will speed up the process of sending events.
-	private void cleanGarbageInfos()
-	{
-		final Iterator<SubscriberInfo> lIter = this.subscriberInfos.iterator();
-		while (lIter.hasNext())
+		// Check if one of the handlers of the observer accepts events of the specified class.
+		private static boolean acceptsClass(SubscriberInfo aInfo, Class<?> aEventClass)
+		{
+			for (HandlerMethod lHandler : aInfo.handlers)
+			{
+				if (lHandler.parameterType.isAssignableFrom(aEventClass))
+				{
+					return true;
+				}
+			}
+			return false;
+		}
+
+		// The handlers that are bound to the source, or to another source with the same identity hash.
+		// The table is built the first time it is needed, concurrent publishers might build the same table.
+		private HandlerList bound(Object aSource)
+		{
+			if ((this.nrBound == 0) || (aSource == null))
+			{
+				return HandlerList.EMPTY;
+			}
+			BoundTable lTable = this.boundTable;
+			if (lTable == null)
+			{
+				lTable = new BoundTable(this.bound, this.nrBound);
+				this.boundTable = lTable;
+			}
+			return lTable.get(aSource);
+		}
+
+		// Look up the handlers that accept events of the specified class from a source of the specified class,
+		// the source class is null if the event has no source. If the combination was not seen before,
+		// the handlers are selected from the observers and the result is added to the table. If observers were added
+		// since the route was made, only these are checked. If observers were removed, their handlers are left out.
+		// Concurrent publishers might compute the same entry, but they will come to the same result.
+		private Route resolve(Class<?> aEventClass, Class<?> aSourceClass)
 		{
-			final SubscriberInfo lInfo = lIter.next();
-			if (lInfo.isGarbage())
+			final DispatchTable.Row lRow = this.dispatchTable.row(aEventClass);
+			final int lColumn = this.dispatchTable.column(aSourceClass);
+			final Route lRoute = lRow.route(lColumn);
+			if ((lRoute != null) && (lRoute.covered >= this.nrUnbound) && (lRoute.removals >= this.removals))
+			{
+				// A route that was made for a later snapshot is fine as well.
+				return lRoute;
+			}
+
+			final HandlerList lPrevious = (lRoute == null) ? HandlerList.EMPTY : lRoute.all;
+			final boolean lRemovals = (lRoute != null) && (lRoute.removals < this.removals);
+			final HandlerList.Builder lMatches = new HandlerList.Builder();
+			for (int i = 0; i < lPrevious.size(); i++)
+			{
+				if (!lRemovals || !lPrevious.infos[i].isGarbage())
+				{
+					lMatches.add(lPrevious.infos[i], lPrevious.handlers[i]);
+				}
+			}
+			final int lKept = lMatches.size();
+			for (int i = (lRoute == null) ? 0 : lRoute.covered; i < this.nrUnbound; i++)
+			{
+				final SubscriberInfo lInfo = this.unbound[i];
+				for (HandlerMethod lHandler : lInfo.handlers)
+				{
+					if (lHandler.accepts(aEventClass, aSourceClass))
+					{
+						lMatches.add(lInfo, lHandler);
+					}
+				}
+			}
+			if ((lRoute != null) && (lKept == lPrevious.size()) && (lMatches.size() == lKept))
 			{
-				lIter.remove();
+				// None of the observers of the route was removed and none of the new ones is interested,
+				// the route keeps its compiled handlers.
+				lRoute.covered = this.nrUnbound;
+				lRoute.removals = this.removals;
+				return lRoute;
 			}
+			// The registration order is kept for handlers with the same priority.
+			final Route lResolved = new Route(lMatches.build(), this.nrUnbound, this.removals);
+			lRow.put(lColumn, lResolved);
+			return lResolved;
+		}
+	}
+
+	// The handler descriptions for the default strategy to call handler methods, it is shared by all buses.
+	private static final HandlerCatalog DEFAULT_CATALOG = new HandlerCatalog(new MethodHandleInvokerFactory(), true);
+
+	// Hands the errors of asynchronous deliveries to the uncaught exception handler of the worker thread.
+	static final DeliveryErrorHandler DEFAULT_ERROR_HANDLER = new DeliveryErrorHandler()
+	{
+		public void deliveryFailed(EventObject aEvent, RuntimeException aError)
+		{
+			final Thread lThread = Thread.currentThread();
+			lThread.getUncaughtExceptionHandler().uncaughtException(lThread, aError);
+		}
+	};
+
+	// The route of a batch before the first event is looked up.
+	private static final Route NO_ROUTE = new Route(HandlerList.EMPTY, 0, 0);
+
+	// The ancestors that want to see the events of a class, in the order in which an event ripples up.
+	// Ancestors that have no handlers for the class and are not sticky are left out. A subclass or an asynchronous
+	// bus publishes in its own way, the chain ends with such an ancestor and the event is handed over to it.
+	private static class Ancestors
+	{
+		private final MessageBus[] interested;
+		// The ancestor that takes care of the rest of the chain, null if the chain ends with the root.
+		private final MessageBus handOver;
+
+		private Ancestors(List<MessageBus> aInterested, MessageBus aHandOver)
+		{
+			this.interested = aInterested.toArray(new MessageBus[aInterested.size()]);
+			this.handOver = aHandOver;
+		}
+	}
+
+	// The chains of ancestors per event class, they are valid as long as none of the ancestors changes.
+	private static class AncestorCache
+	{
+		// The ancestors version of the bus when the cache was started.
+		private final long version;
+		// The chains on the number of the event class, the array is replaced as a whole.
+		private volatile Ancestors[] chains = new Ancestors[0];
+
+		private AncestorCache(long aVersion)
+		{
+			this.version = aVersion;
+		}
+
+		// The chain for the event class with the number, null if it was not collected yet.
+		private Ancestors get(int aNumber)
+		{
+			final Ancestors[] lChains = this.chains;
+			return (aNumber < lChains.length) ? lChains[aNumber] : null;
+		}
+
+		// Concurrent publishers might store the same chain, they come to the same result.
+		private synchronized void put(int aNumber, Ancestors aAncestors)
+		{
+			final Ancestors[] lChains = Arrays.copyOf(this.chains, Math.max(this.chains.length, aNumber + 1));
+			lChains[aNumber] = aAncestors;
+			this.chains = lChains;
+		}
+	}
+
+	private static final Ancestors NO_ANCESTORS = new Ancestors(new ArrayList<MessageBus>(0), null);
+
+	// For each event class, the children that have a handler for the class in their subtree.
+	// The cache is valid as long as the subtree of the bus does not change.
+	private static class ChildCache
+	{
+		private final long version;
+		// The children on the number of the event class, the array is replaced as a whole.
+		private volatile ChildRef[][] targets = new ChildRef[0][];
+
+		private ChildCache(long aVersion)
+		{
+			this.version = aVersion;
+		}
+
+		// The interested children for the event class with the number, null if they were not looked up yet.
+		private ChildRef[] get(int aNumber)
+		{
+			final ChildRef[][] lTargets = this.targets;
+			return (aNumber < lTargets.length) ? lTargets[aNumber] : null;
+		}
+
+		// Concurrent broadcasts might store the same children, they come to the same result.
+		private synchronized void put(int aNumber, ChildRef[] aChildren)
+		{
+			final ChildRef[][] lTargets = Arrays.copyOf(this.targets, Math.max(this.targets.length, aNumber + 1));
+			lTargets[aNumber] = aChildren;
+			this.targets = lTargets;
+		}
+	}
+
+	// The reference of a parent to a child, the parent does not keep its children alive.
+	private static class ChildRef extends WeakReference<MessageBus>
+	{
+		private ChildRef(MessageBus aChild, ReferenceQueue<MessageBus> aQueue)
+		{
+			super(aChild, aQueue);
 		}
 	}
 
+	private static final ChildRef[] NO_CHILDREN = new ChildRef[0];
+
+	// The maximum number of collected subscribers that are removed by a single registration or publication.
+	private static final int EXPUNGE_LIMIT = 64;
+
+	// The observers, it is guarded by the bus lock.
+	private final SubscriberRegistry registry = new SubscriberRegistry();
+	// The weak references of collected observers are put on this queue by the garbage collector.
+	private final ReferenceQueue<Object> collected = new ReferenceQueue<Object>();
+	// The number of removed or collected subscribers that are still in the snapshot, it is guarded by the bus lock.
+	private int removedSinceSnapshot = 0;
+	// The number of handlers that were registered, it gives each handler its place in the delivery order. It is guarded by the bus lock.
+	private long registrations = 0;
+
+	// The numbers of the event and source classes in the dispatch tables.
+	private final ClassNumbers classNumbers = new ClassNumbers();
+	// The current view on the observers. A registration extends the previous snapshot, this keeps registering
+	// a large number of subscribers cheap. It is replaced under the bus lock.
+	private volatile Snapshot snapshot = Snapshot.of(new SubscriberInfo[0], this.classNumbers);
+
+	// The parent bus.
+	private MessageBus parentBus;
+	// Incremented when the observers or the mode of one of the ancestors change, the ancestors push the change down.
+	private final AtomicLong ancestorsVersion = new AtomicLong();
+	// Is the bus in the list of children of its parent? It is set under the lock of that list.
+	private volatile boolean attached;
+	// The interested ancestors per event class, null until the first event ripples up.
+	private volatile AncestorCache ancestorCache;
+	// The striped bus this bus is a stripe of, null for the other buses.
+	private final MessageBus owner;
+	// The child buses, they are guarded by the list. Children that were collected are put on the queue.
+	private final List<ChildRef> children = new ArrayList<ChildRef>();
+	private final ReferenceQueue<MessageBus> collectedChildren = new ReferenceQueue<MessageBus>();
+	// Incremented when the observers of this bus or of one of its descendants change, or when a child comes or goes.
+	private final AtomicLong subtreeVersion = new AtomicLong();
+	// The interested children per event class, null until the first broadcast.
+	private volatile ChildCache childCache;
+
+	// The handler descriptions of the subscriber classes.
+	private HandlerCatalog catalog;
+
+	// Runs the asynchronous deliveries.
+	private volatile Executor executor;
+	// Receives the errors of asynchronous deliveries.
+	private volatile DeliveryErrorHandler errorHandler = DEFAULT_ERROR_HANDLER;
+	// Should publish deliver the events asynchronously?
+	private volatile boolean asynchronous;
+	// Should the handlers of an asynchronous publication be called in parallel?
+	private volatile boolean parallelDelivery;
+	// The most recent events in sticky mode, null if the bus is not sticky.
+	private volatile StickyCache sticky;
+	// The number of publications after which a route is compiled, 0 if the routes are not compiled.
+	private volatile int compileThreshold;
+
 	/**
-	 * The number of handler methods.
-	 * If a bean has multiple handlers, each method will be counted separately.
+	 * Construct a message bus that is connected to a parent bus. Messages will be sent to the parent
+	 * bus as well. This makes it possible to create a hierarchy of messages busses. Messages published
+	 * on the children will reach the parent bus, but parent messages will not be sent to the children unless they
+	 * are {@link #broadcastDown(EventObject) broadcast}. This can be used to reduce the traffic on the bus.
 	 * 
-	 * @return The number of handler methods registered to this bus. 
+	 * <p>A bus remembers which of its ancestors have handlers for an event class, an event that is not consumed
+	 * only visits these ancestors and skips the others. The information is refreshed when one of the ancestors changes.
+	 * 
+	 * <p>The parent only learns about the bus when it is used for the first time, when a subscriber is registered, an event
+	 * is published or the bus becomes sticky. The constructor does not hand out the bus, not even for a subclass.
+	 * A bus that was never used receives no broadcasts, it has no handlers anyway.
+	 * 
+	 * <p>A bus with an explicit invoker factory scans the subscriber classes with reflection and calls the handlers
+	 * with the invokers of the factory, it does not use the {@link NotifyDispatcher generated dispatchers}.
+	 * 
+	 * @param aParent  A parent bus, events will be sent to the parent bus as well.
+	 * @param aInvokerFactory The strategy to call the handler methods.
 	 */
-    public int getNrSubscribers()
-    {
-        return subscriberInfos.size();
-    }
+	public MessageBus(MessageBus aParent, HandlerInvokerFactory aInvokerFactory)
+	{
+		this(aParent, new HandlerCatalog(aInvokerFactory, false), null);
+	}
+
+	/**
+	 * Construct a message bus that is connected to a parent bus. The handlers are called by the {@link NotifyDispatcher dispatcher}
+	 * that was generated for the subscriber class, classes without dispatcher are called using {@link MethodHandleInvokerFactory method handles}.
+	 *
+	 * @param aParent  A parent bus, events will be sent to the parent bus as well.
+	 * @see #MessageBus(MessageBus, HandlerInvokerFactory)
+	 */
+	public MessageBus(MessageBus aParent)
+	{
+		this(aParent, DEFAULT_CATALOG, null);
+	}
+
+	private MessageBus(MessageBus aParent, HandlerCatalog aCatalog, MessageBus aOwner)
+	{
+		this.parentBus = aParent;
+		this.catalog = aCatalog;
+		this.owner = aOwner;
+	}
+
+	// Create a stripe of this bus, it has the same parent but it is not one of the children of the parent.
+	// A change of its observers counts as a change of this bus, so it is seen by the children of this bus.
+	MessageBus createPeer()
+	{
+		return new MessageBus(this.parentBus, this.catalog, this);
+	}
+
+	/**
+	 * Create a message bus.
+	 */
+	public MessageBus()
+	{
+		this(null);
+	}
+
+	/**
+	 * Register a bean as a subscriber. The bus will scan the bean for {@link Notify annotated} methods and these
+	 * methods will be called when a corresponding message is {@link #publish(EventObject) published} on the bus.
+	 * 
+	 * @param aSubscriber A POJO containing annotated call back methods.
+	 * @see #unregister(Object)
+	 * @see Notify
+	 */
+	public void register(Object aSubscriber)
+	{
+		add(aSubscriber, null);
+	}
+
+	/**
+	 * Register a bean as a subscriber for the events of a single source. The handlers of the bean are only called for events
+	 * of which the {@link EventObject#getSource() source} is the specified object, the other {@link Notify} filters still apply.
+	 * The bus finds these handlers with an index on the identity of the source, so the events of other sources of the same class
+	 * do not reach them. The bus keeps a weak reference to the source, the registration ends when the source is garbage collected.
+	 * 
+	 * <p>The bound handlers and the other handlers are called in the order of their {@link Notify#priority() priority}
+	 * and, for the same priority, in the order in which they were registered.
+	 * 
+	 * <pre> bus.register(this, order);</pre>
+	 * 
+	 * @param aSubscriber A POJO containing annotated call back methods.
+	 * @param aSource The source of the events the subscriber is interested in.
+	 * @see #unregister(Object)
+	 */
+	public void register(Object aSubscriber, Object aSource)
+	{
+		if (aSource == null) throw new IllegalArgumentException("The source of a subscription cannot be null.");
+		add(aSubscriber, aSource);
+	}
+
+	// Add the handlers of the subscriber, bound to a source or not.
+	private void add(Object aSubscriber, Object aSource)
+	{
+		// The class is only scanned for handlers the first time one of its instances is registered.
+		final HandlerMethod[] lHandlers = this.catalog.getHandlers(aSubscriber.getClass());
+		if (lHandlers.length == 0)
+		{
+			return;
+		}
+
+		// A single entry and a single weak reference for all handlers of the subscriber.
+		final SubscriberInfo lInfo;
+		synchronized (this)
+		{
+			lInfo = new SubscriberInfo(aSubscriber, aSource, lHandlers, this.registrations, this.collected);
+			this.registrations += lHandlers.length;
+			this.registry.add(lInfo);
+			changed(this.snapshot.with(lInfo));
+		}
+
+		// Do some cleanup.
+		expungeCollected(EXPUNGE_LIMIT);
+
+		// The new handlers receive the remembered events.
+		final StickyCache lSticky = this.sticky;
+		if (lSticky != null)
+		{
+			replay(lSticky, lInfo);
+		}
+	}
+
+	/**
+	 * Subscribe a function to the events of the specified class. The function is called directly, without reflection, and
+	 * the bus keeps a strong reference to it until the subscription is {@link Subscription#close() closed}. This makes it
+	 * possible to subscribe lambdas, they would be garbage collected immediately if the bus only kept a weak reference.
+	 * The function has priority 0, it is called in registration order together with the handlers of the registered beans
+	 * that have the same priority.
+	 * 
+	 * <pre> Subscription subscription = bus.subscribe(PropertyChangeEvent.class, event -&gt; refresh());</pre>
+	 * 
+	 * @param aEventClass The class of the events, events of subclasses are received as well.
+	 * @param aHandler The function that handles the events.
+	 * @param <E> The type of the events.
+	 * @return The handle to end the subscription.
+	 * @see #intercept(Class, Predicate)
+	 */
+	public <E extends EventObject> Subscription subscribe(Class<E> aEventClass, final Consumer<? super E> aHandler)
+	{
+		return addFunction(aEventClass, 0, new Predicate<Object>()
+		{
+			@SuppressWarnings("unchecked")
+			public boolean test(Object aEvent)
+			{
+				aHandler.accept((E) aEvent);
+				return false;
+			}
+		});
+	}
+
+	/**
+	 * Subscribe a function that can consume the events of the specified class. If the function returns 'true' the
+	 * event is consumed, the other handlers will not be called, just like a {@link Notify} handler that returns 'true'.
+	 * 
+	 * @param aEventClass The class of the events, events of subclasses are received as well.
+	 * @param aHandler The function that handles the events, the result tells if the event was consumed.
+	 * @param <E> The type of the events.
+	 * @return The handle to end the subscription.
+	 * @see #subscribe(Class, Consumer)
+	 */
+	public <E extends EventObject> Subscription intercept(Class<E> aEventClass, Predicate<? super E> aHandler)
+	{
+		return intercept(aEventClass, 0, aHandler);
+	}
+
+	/**
+	 * Subscribe a function that can consume the events of the specified class, with a priority. The function is called
+	 * before the handlers with a lower priority, see {@link Notify#priority()}.
+	 * 
+	 * @param aEventClass The class of the events, events of subclasses are received as well.
+	 * @param aPriority Handlers with a higher priority are called first.
+	 * @param aHandler The function that handles the events, the result tells if the event was consumed.
+	 * @param <E> The type of the events.
+	 * @return The handle to end the subscription.
+	 */
+	@SuppressWarnings("unchecked")
+	public <E extends EventObject> Subscription intercept(Class<E> aEventClass, int aPriority, Predicate<? super E> aHandler)
+	{
+		// The function is only called with events of the class.
+		return addFunction(aEventClass, aPriority, (Predicate<Object>) aHandler);
+	}
+
+	// Add a handler function and create the handle to remove it again.
+	private Subscription addFunction(Class<?> aEventClass, int aPriority, Predicate<Object> aFunction)
+	{
+		if (aFunction == null) throw new IllegalArgumentException("The handler of a subscription cannot be null.");
+		final FunctionalInfo lInfo;
+		synchronized (this)
+		{
+			lInfo = new FunctionalInfo(aEventClass, aFunction, aPriority, this.registrations++);
+			this.registry.add(lInfo);
+			changed(this.snapshot.with(lInfo));
+		}
+
+		final StickyCache lSticky = this.sticky;
+		if (lSticky != null)
+		{
+			replay(lSticky, lInfo);
+		}
+		return new Subscription()
+		{
+			public void close()
+			{
+				remove(lInfo);
+			}
+		};
+	}
+
+	// Remove a single handler.
+	private synchronized void remove(SubscriberInfo aInfo)
+	{
+		if (this.registry.remove(aInfo))
+		{
+			aInfo.clear();
+			removed(1);
+		}
+	}
+
+	/**
+	 * Remove a bean as a listener. The bean will no longer receive messages published on the bus.
+	 * The cost only depends on the number of handlers of the bean, not on the number of registered subscribers.
+	 * 
+	 * @param aSubscriber The POJO to be removed from the bus.
+	 * @see #register(Object)
+	 */
+	public synchronized void unregister(Object aSubscriber)
+	{
+		final int lRemoved = this.registry.removeSubscriber(aSubscriber);
+		if (lRemoved > 0)
+		{
+			removed(lRemoved);
+		}
+	}
+
+	/**
+	 * Remove a number of beans as listeners in one go. The bus lock is taken only once and the
+	 * snapshot of the subscribers is replaced only once, this is cheaper than unregistering the beans one by one.
+	 * 
+	 * @param aSubscribers The POJOs to be removed from the bus.
+	 * @see #unregister(Object)
+	 */
+	public synchronized void unregisterAll(Collection<?> aSubscribers)
+	{
+		int lRemoved = 0;
+		for (Object lSubscriber : aSubscribers)
+		{
+			lRemoved += this.registry.removeSubscriber(lSubscriber);
+		}
+		if (lRemoved > 0)
+		{
+			removed(lRemoved);
+		}
+	}
+
+	/**
+	 * Check if there are handlers that accept events of the specified class, on this bus or on one of its parents.
+	 * A publisher can skip creating and publishing an event if nobody is interested. The answer is cached until
+	 * the subscribers change, so the check is cheap. The other filters of the handlers, like the source type, are
+	 * not taken into account, so the answer can be 'true' while the event will not be delivered to a handler.
+	 * A {@link #setSticky(int) sticky} bus is interested in all events it can remember for the subscribers to come,
+	 * the {@link VetoableEvent} events are not remembered.
+	 * 
+	 * @param aEventClass The class of the event that will be published.
+	 * @return True if an event of the class could reach a handler.
+	 */
+	public boolean hasSubscribersFor(Class<? extends EventObject> aEventClass)
+	{
+		return isInterested(aEventClass) || (ancestorsFor(aEventClass) != NO_ANCESTORS);
+	}
+
+	// Does this bus want to see events of the class, without looking at the parents or the children?
+	boolean isInterested(Class<?> aEventClass)
+	{
+		return ((this.sticky != null) && !VetoableEvent.class.isAssignableFrom(aEventClass)) || currentSnapshot().isInterested(aEventClass);
+	}
+
+	/**
+	 * <p>Publish an event on the message bus. All {@link #register(Object) registered} handlers that are interested in this
+	 * event will be called.
+	 * 
+	 * <p>All events should be derived from the standard Java java.util.EventObject as all events are. This is not really a restriction since
+    * it contains the source of the event (which can be null), and we can filter on the type of this.
+	 * 
+	 * <p>Once the handlers for a type of event were looked up, a synchronous publication does not allocate memory.
+	 * 
+	 * @param aEvent The event to be published on the bus.
+	 */
+	public void publish(EventObject aEvent)
+	{
+		if (this.asynchronous && !(aEvent instanceof VetoableEvent))
+		{
+			publishAsync(aEvent);
+		}
+		else
+		{
+			remember(aEvent);
+			deliver(aEvent, null);
+		}
+	}
+
+	/**
+	 * <p>Publish an event that is expensive to create. The event is only created if a handler on this bus or on one of
+	 * its parents accepts events of the specified class, see {@link #hasSubscribersFor(Class)}. Otherwise nothing happens,
+	 * the supplier is not called.
+	 * 
+	 * <pre> bus.publish(OrderDiffEvent.class, new Supplier&lt;OrderDiffEvent&gt;()
+	 * {
+	 *     public OrderDiffEvent get()
+	 *     {
+	 *         return new OrderDiffEvent(order, order.diff(previous));
+	 *     }
+	 * });</pre>
+	 * 
+	 * @param aEventClass The class of the event.
+	 * @param aSupplier Creates the event, it is called at most once.
+	 * @param <E> The type of the event.
+	 * @see #publish(EventObject)
+	 */
+	public <E extends EventObject> void publish(Class<E> aEventClass, Supplier<? extends E> aSupplier)
+	{
+		if (hasSubscribersFor(aEventClass))
+		{
+			publish(aSupplier.get());
+		}
+	}
+
+	/**
+	 * <p>Publish an event on the message bus and return immediately, the handlers are called by the {@link #setExecutor(Executor) executor}
+	 * of the bus. The handlers of a single event are called one after the other in the normal order, so a handler can still consume the event.
+	 * If a handler throws an exception, it is passed to the {@link #setErrorHandler(DeliveryErrorHandler) error handler} and
+	 * the event is delivered to the remaining handlers.
+	 *
+	 * <p>Events that can be vetoed, the {@link VetoableEvent} events, are always delivered synchronously on the thread of the caller.
+	 * A {@link PropertyVetoException} is thrown to the caller, exactly as it is done by {@link #publish(EventObject)}.
+	 *
+	 * @param aEvent The event to be published on the bus.
+	 * @throws IllegalStateException If the bus has no executor.
+	 */
+	public void publishAsync(final EventObject aEvent)
+	{
+		if (aEvent instanceof VetoableEvent)
+		{
+			deliver(aEvent, null);
+			return;
+		}
+
+		final Executor lExecutor = this.executor;
+		if (lExecutor == null)
+		{
+			throw new IllegalStateException("The message bus needs an executor to publish events asynchronously.");
+		}
+		remember(aEvent);
+		final DeliveryErrorHandler lErrorHandler = this.errorHandler;
+		if (this.parallelDelivery)
+		{
+			deliverParallel(aEvent, lExecutor, lErrorHandler);
+			return;
+		}
+		lExecutor.execute(new Runnable()
+		{
+			public void run()
+			{
+				try
+				{
+					deliver(aEvent, lErrorHandler);
+				}
+				catch (RuntimeException e)
+				{
+					// An error of the parent bus.
+					lErrorHandler.deliveryFailed(aEvent, e);
+				}
+			}
+		});
+	}
+
+	/**
+	 * <p>Publish a batch of events on the message bus. The result is the same as publishing the events one after the other,
+	 * each event can be consumed by a handler and the events reach the handlers of this bus in the order of the collection.
+	 * The handlers are looked up once for a run of events of the same type and the events that were not consumed
+	 * are passed to the parent bus in a single batch, after all events were delivered on this bus.
+ * If a handler throws, the events before the failing one that were not consumed still reach the parent bus.
+	 *
+	 * <p>In {@link #setAsynchronous(boolean) asynchronous} mode the events are published one by one.
+	 *
+	 * @param aEvents The events to be published on the bus.
+	 */
+	public void publishAll(Collection<? extends EventObject> aEvents)
+	{
+		if (this.asynchronous)
+		{
+			for (EventObject lEvent : aEvents)
+			{
+				publish(lEvent);
+			}
+			return;
+		}
+
+		final Snapshot lSnapshot = currentSnapshot();
+		final MessageBus lParent = this.parentBus;
+		List<EventObject> lUnhandled = null;
+
+		try
+		{
+			Class<? extends EventObject> lEventClass = null;
+			Class<?> lSourceClass = null;
+			Route lRoute = NO_ROUTE;
+			for (EventObject lEvent : aEvents)
+			{
+				remember(lEvent);
+
+				// Only look up the handlers if the type of the event changes.
+				final Object lSource = lEvent.getSource();
+				final Class<?> lNextSourceClass = (lSource == null) ? null : lSource.getClass();
+				if ((lEvent.getClass() != lEventClass) || (lNextSourceClass != lSourceClass))
+				{
+					lEventClass = lEvent.getClass();
+					lSourceClass = lNextSourceClass;
+					lRoute = lSnapshot.resolve(lEventClass, lSourceClass);
+				}
+
+				if (!notifyRoute(lRoute, lEvent, propertyName(lEvent), lSnapshot.bound(lSource), null) && (ancestorsFor(lEventClass) != NO_ANCESTORS))
+				{
+					if (lUnhandled == null)
+					{
+						lUnhandled = new ArrayList<EventObject>();
+					}
+					lUnhandled.add(lEvent);
+				}
+			}
+		}
+		catch (RuntimeException e)
+		{
+			// The events that were not handled before a handler failed still reach the parent.
+			// The failure of this bus is the one the caller gets, the failures of the parent are added to it.
+			if (lUnhandled != null)
+			{
+				try
+				{
+					lParent.publishAll(lUnhandled);
+				}
+				catch (RuntimeException ex)
+				{
+					e.addSuppressed(ex);
+				}
+			}
+			throw e;
+		}
+
+		// Ripple the remaining events to the parent.
+		if (lUnhandled != null)
+		{
+			lParent.publishAll(lUnhandled);
+		}
+	}
+
+	// Deliver the event with a separate task for each handler. The handlers cannot consume the event,
+	// they run at the same time, so the event is always passed to the parent bus as well.
+	private void deliverParallel(final EventObject aEvent, Executor aExecutor, final DeliveryErrorHandler aErrorHandler)
+	{
+		final Snapshot lSnapshot = currentSnapshot();
+		final Object lSource = aEvent.getSource();
+		final String lProperty = propertyName(aEvent);
+		final HandlerList lHandlers = lSnapshot.resolve(aEvent.getClass(), (lSource == null) ? null : lSource.getClass()).select(lProperty);
+		for (int i = 0; i < lHandlers.size(); i++)
+		{
+			if (!lHandlers.infos[i].isGarbage())
+			{
+				notifyLater(lHandlers, i, aEvent, aExecutor, aErrorHandler);
+			}
+		}
+		final HandlerList lBound = lSnapshot.bound(lSource);
+		for (int i = 0; i < lBound.size(); i++)
+		{
+			if (lBound.acceptsBound(i, lSource, aEvent.getClass(), lProperty))
+			{
+				notifyLater(lBound, i, aEvent, aExecutor, aErrorHandler);
+			}
+		}
+
+		// Ripple the event to the parent.
+		if (ancestorsFor(aEvent.getClass()) != NO_ANCESTORS)
+		{
+			aExecutor.execute(new Runnable()
+			{
+				public void run()
+				{
+					try
+					{
+						ripple(aEvent);
+					}
+					catch (RuntimeException e)
+					{
+						aErrorHandler.deliveryFailed(aEvent, e);
+					}
+				}
+			});
+		}
+	}
+
+	// Keep the event in sticky mode, the events that can be vetoed are proposals so they are not kept.
+	private void remember(EventObject aEvent)
+	{
+		final StickyCache lSticky = this.sticky;
+		if ((lSticky != null) && !(aEvent instanceof VetoableEvent))
+		{
+			lSticky.put(aEvent, propertyName(aEvent));
+		}
+	}
+
+	// Deliver the remembered events to the handlers of a subscriber that was just added, the other handlers do not see them again.
+	// The errors of the handlers are passed to the error handler, there is no publisher to throw them to.
+	private void replay(StickyCache aSticky, SubscriberInfo aInfo)
+	{
+		final HandlerList.Builder lBuilder = new HandlerList.Builder();
+		lBuilder.addAll(aInfo);
+		final HandlerList lHandlers = lBuilder.build();
+		final DeliveryErrorHandler lErrorHandler = this.errorHandler;
+		for (EventObject lEvent : aSticky.toArray())
+		{
+			final Object lSource = lEvent.getSource();
+			final Class<?> lSourceClass = (lSource == null) ? null : lSource.getClass();
+			final String lProperty = propertyName(lEvent);
+			boolean lHandled = false;
+			for (int i = 0; (i < lHandlers.size()) && !lHandled; i++)
+			{
+				final HandlerMethod lHandler = lHandlers.handlers[i];
+				final boolean lAccepts = (aInfo.source == null) ?
+					lHandler.accepts(lEvent.getClass(), lSourceClass) && lHandler.acceptsProperty(lProperty) :
+					(lSource != null) && aInfo.acceptsBound(lHandler, lSource, lEvent.getClass(), lProperty);
+				if (lAccepts)
+				{
+					lHandled = notifyHandler(lHandlers, i, lEvent, lErrorHandler);
+				}
+			}
+		}
+	}
+
+	// Call a single handler with a task of the executor.
+	private static void notifyLater(final HandlerList aHandlers, final int aIndex, final EventObject aEvent, Executor aExecutor, final DeliveryErrorHandler aErrorHandler)
+	{
+		aExecutor.execute(new Runnable()
+		{
+			public void run()
+			{
+				try
+				{
+					aHandlers.notify(aIndex, aEvent);
+				}
+				catch (RuntimeException e)
+				{
+					aErrorHandler.deliveryFailed(aEvent, e);
+				}
+			}
+		});
+	}
+
+	// Deliver the event to the handlers on this bus and ripple it to the parent bus if it was not consumed.
+	// Without error handler, an exception of a handler ends the delivery and it is thrown to the caller.
+	// With an error handler, the exception is reported and the delivery continues with the next handler.
+	private void deliver(EventObject aEvent, DeliveryErrorHandler aErrorHandler)
+	{
+		if (!deliverHere(aEvent, aErrorHandler))
+		{
+			ripple(aEvent);
+		}
+	}
+
+	// Deliver the event to the handlers on this bus only, the result tells if a handler consumed the event.
+	private boolean deliverHere(EventObject aEvent, DeliveryErrorHandler aErrorHandler)
+	{
+		final Snapshot lSnapshot = currentSnapshot();
+		final Object lSource = aEvent.getSource();
+		final Route lRoute = lSnapshot.resolve(aEvent.getClass(), (lSource == null) ? null : lSource.getClass());
+		return notifyRoute(lRoute, aEvent, propertyName(aEvent), lSnapshot.bound(lSource), aErrorHandler);
+	}
+
+	// Call the handlers of a route and the handlers bound to the source. A hot route is called through its compiled chain
+	// if there are no bound handlers and the errors go to the publisher, otherwise the handlers are called one by one.
+	private boolean notifyRoute(Route aRoute, EventObject aEvent, String aProperty, HandlerList aBound, DeliveryErrorHandler aErrorHandler)
+	{
+		final int lThreshold = this.compileThreshold;
+		if ((lThreshold > 0) && (aErrorHandler == null) && (aBound.size() == 0))
+		{
+			final MethodHandle lChain = aRoute.hotChain(lThreshold);
+			if (lChain != null)
+			{
+				return notifyChain(lChain, aEvent, aProperty);
+			}
+		}
+		return notifyHandlers(aEvent, aProperty, aRoute.select(aProperty), aBound, aErrorHandler);
+	}
+
+	// Pass an event that was not consumed up the hierarchy. Only the ancestors that are interested in the event are visited,
+	// the event is delivered synchronously to each of them, exactly as their publish would do, until one of them consumes it.
+	private void ripple(EventObject aEvent)
+	{
+		final Ancestors lAncestors = ancestorsFor(aEvent.getClass());
+		for (MessageBus lBus : lAncestors.interested)
+		{
+			lBus.remember(aEvent);
+			if (lBus.deliverHere(aEvent, null))
+			{
+				return;
+			}
+		}
+		if (lAncestors.handOver != null)
+		{
+			lAncestors.handOver.publish(aEvent);
+		}
+	}
+
+	// The ancestors that are interested in events of the class. The chains are cached, the cache is dropped
+	// when one of the ancestors changes. The ancestors push their changes down, so a publication only checks the version
+	// of its own bus. Changes elsewhere in the tree, on siblings or descendants, leave the cache alone.
+	// The stripes of a striped bus have the same ancestors, they use the cache of the striped bus.
+	private Ancestors ancestorsFor(Class<? extends EventObject> aEventClass)
+	{
+		if (this.owner != null)
+		{
+			return this.owner.ancestorsFor(aEventClass);
+		}
+		if (this.parentBus == null)
+		{
+			return NO_ANCESTORS;
+		}
+		// The changes of the ancestors are only pushed down to attached buses.
+		attach();
+
+		final long lVersion = this.ancestorsVersion.get();
+		AncestorCache lCache = this.ancestorCache;
+		if ((lCache == null) || (lCache.version != lVersion))
+		{
+			lCache = new AncestorCache(lVersion);
+			this.ancestorCache = lCache;
+		}
+		final int lNumber = this.classNumbers.eventClasses.get(aEventClass);
+		Ancestors lAncestors = lCache.get(lNumber);
+		if (lAncestors == null)
+		{
+			// Concurrent publishers might collect the same chain, they come to the same result.
+			lAncestors = collectAncestors(aEventClass);
+			lCache.put(lNumber, lAncestors);
+		}
+		return lAncestors;
+	}
+
+	// The cached chain of ancestors for the event class, null if it is not cached or no longer valid.
+	Object cachedAncestors(Class<? extends EventObject> aEventClass)
+	{
+		final AncestorCache lCache = this.ancestorCache;
+		return ((lCache == null) || (lCache.version != this.ancestorsVersion.get())) ? null : lCache.get(this.classNumbers.eventClasses.get(aEventClass));
+	}
+
+	// Walk up the hierarchy and keep the ancestors that are interested in events of the class.
+	private Ancestors collectAncestors(Class<? extends EventObject> aEventClass)
+	{
+		final List<MessageBus> lInterested = new ArrayList<MessageBus>();
+		MessageBus lHandOver = null;
+		for (MessageBus lBus = this.parentBus; lBus != null; lBus = lBus.parentBus)
+		{
+			if ((lBus.getClass() != MessageBus.class) || lBus.asynchronous)
+			{
+				// The ancestor publishes in its own way, it takes care of its own ancestors.
+				if (lBus.hasSubscribersFor(aEventClass))
+				{
+					lHandOver = lBus;
+				}
+				break;
+			}
+			if (lBus.isInterested(aEventClass))
+			{
+				lInterested.add(lBus);
+			}
+		}
+		return (lInterested.isEmpty() && (lHandOver == null)) ? NO_ANCESTORS : new Ancestors(lInterested, lHandOver);
+	}
+
+	// Replace the snapshot after observers were removed. Their entries are only dropped from the arrays of the snapshot
+	// when more than half of the entries are garbage, this keeps the cost of a removal independent of the number of observers.
+	private void removed(int aCount)
+	{
+		this.removedSinceSnapshot += aCount;
+		if (this.removedSinceSnapshot > (this.snapshot.size() >> 1))
+		{
+			rebuild();
+		}
+		else
+		{
+			changed(this.snapshot.afterRemoval());
+		}
+	}
+
+	// Take a new snapshot without the removed observers, it starts a new dispatch table.
+	private void rebuild()
+	{
+		this.removedSinceSnapshot = 0;
+		changed(Snapshot.of(this.registry.toArray(), this.classNumbers));
+	}
+
+	// Replace the snapshot after a change of the observers. The ancestor chains of the descendants
+	// might include or exclude this bus, they are collected again.
+	private void changed(Snapshot aSnapshot)
+	{
+		attach();
+		this.snapshot = aSnapshot;
+		interestChanged();
+		subtreeChanged();
+	}
+
+	// The chains of ancestors of the descendants might include or exclude this bus now, the change is pushed down
+	// the hierarchy. The descendants see a stripe through the striped bus it belongs to. The cost depends on
+	// the number of descendants, a bus without children only takes a look at its empty list.
+	private void interestChanged()
+	{
+		for (MessageBus lChild : ((this.owner != null) ? this.owner : this).liveChildren())
+		{
+			lChild.ancestorsChanged();
+		}
+	}
+
+	// One of the ancestors changed, the chains of this bus and of its descendants are collected again.
+	private void ancestorsChanged()
+	{
+		this.ancestorsVersion.incrementAndGet();
+		for (MessageBus lChild : liveChildren())
+		{
+			lChild.ancestorsChanged();
+		}
+	}
+
+	// The interest of the subtree might have changed, the broadcasts of this bus and its ancestors look for the interested children again.
+	private void subtreeChanged()
+	{
+		for (MessageBus lBus = this; lBus != null; lBus = (lBus.owner != null) ? lBus.owner : lBus.parentBus)
+		{
+			lBus.subtreeVersion.incrementAndGet();
+		}
+	}
+
+	/**
+	 * <p>Deliver an event to this bus and to all its descendants, for example to notify all the sessions that are attached
+	 * to a root bus. The bus only descends into the children that have a handler for the event class in their subtree,
+	 * the others are skipped. The interest of the subtrees is cached until the handlers of one of the buses change.
+	 *
+	 * <p>On each bus the handlers are called in the normal order. A handler that consumes the event stops the delivery
+	 * on its bus and on the descendants of its bus, the other buses still receive the event. The event does not ripple up
+	 * to the parents. An exception of a handler is passed to the {@link #setErrorHandler(DeliveryErrorHandler) error handler}
+	 * of its bus and the broadcast continues, a failing session does not keep the event from the other sessions.
+	 *
+	 * <p>Events that can be vetoed, the {@link VetoableEvent} events, bypass the error handlers. The first
+	 * {@link PropertyVetoException} stops the broadcast and is thrown to the caller, exactly as it is done by {@link #publish(EventObject)}.
+	 *
+	 * <p>An {@link #setAsynchronous(boolean) asynchronous} bus receives the broadcast with a task of its executor, exactly as its
+	 * own publications. Its handlers run later, so they cannot consume the event and the descendants of the bus always receive it.
+	 * Vetoable events are delivered synchronously, as they are by {@link #publish(EventObject)}.
+	 *
+	 * @param aEvent The event to be delivered on the hierarchy below this bus.
+	 */
+	public void broadcastDown(EventObject aEvent)
+	{
+		broadcast(aEvent, aEvent.getClass());
+	}
+
+	// Deliver a broadcast on this bus and pass it on to the interested children.
+	private void broadcast(EventObject aEvent, Class<? extends EventObject> aEventClass)
+	{
+		if (isInterested(aEventClass) && receiveBroadcast(aEvent))
+		{
+			return;
+		}
+		for (ChildRef lRef : interestedChildren(aEventClass))
+		{
+			final MessageBus lChild = lRef.get();
+			if (lChild != null)
+			{
+				lChild.broadcast(aEvent, aEventClass);
+			}
+		}
+	}
+
+	// Deliver a broadcast to the handlers of this bus, the result tells if a handler consumed the event.
+	// A veto is not given to the error handler, it goes back to the caller of the broadcast.
+	// An asynchronous bus delivers in the background, a bus without executor delivers synchronously.
+	boolean receiveBroadcast(final EventObject aEvent)
+	{
+		remember(aEvent);
+		if (aEvent instanceof VetoableEvent)
+		{
+			return deliverHere(aEvent, null);
+		}
+		final DeliveryErrorHandler lErrorHandler = this.errorHandler;
+		final Executor lExecutor = this.executor;
+		if (!this.asynchronous || (lExecutor == null))
+		{
+			return deliverHere(aEvent, lErrorHandler);
+		}
+		lExecutor.execute(new Runnable()
+		{
+			public void run()
+			{
+				try
+				{
+					deliverHere(aEvent, lErrorHandler);
+				}
+				catch (RuntimeException e)
+				{
+					lErrorHandler.deliveryFailed(aEvent, e);
+				}
+			}
+		});
+		return false;
+	}
+
+	// Is there a bus in the subtree, this bus included, that wants to see events of the class?
+	private boolean isSubtreeInterested(Class<? extends EventObject> aEventClass)
+	{
+		return isInterested(aEventClass) || (interestedChildren(aEventClass).length > 0);
+	}
+
+	// The children that have a handler for the event class in their subtree.
+	private ChildRef[] interestedChildren(Class<? extends EventObject> aEventClass)
+	{
+		expungeChildren();
+		final long lVersion = this.subtreeVersion.get();
+		ChildCache lCache = this.childCache;
+		if ((lCache == null) || (lCache.version != lVersion))
+		{
+			lCache = new ChildCache(lVersion);
+			this.childCache = lCache;
+		}
+		final int lNumber = this.classNumbers.eventClasses.get(aEventClass);
+		ChildRef[] lTargets = lCache.get(lNumber);
+		if (lTargets == null)
+		{
+			final ChildRef[] lChildren;
+			synchronized (this.children)
+			{
+				lChildren = this.children.toArray(new ChildRef[this.children.size()]);
+			}
+			final List<ChildRef> lInterested = new ArrayList<ChildRef>();
+			for (ChildRef lRef : lChildren)
+			{
+				final MessageBus lChild = lRef.get();
+				if ((lChild != null) && lChild.isSubtreeInterested(aEventClass))
+				{
+					lInterested.add(lRef);
+				}
+			}
+			lTargets = lInterested.isEmpty() ? NO_CHILDREN : lInterested.toArray(new ChildRef[lInterested.size()]);
+			lCache.put(lNumber, lTargets);
+		}
+		return lTargets;
+	}
+
+	// Make the bus known to its parent the first time it is used, from then on broadcasts of the parent reach it and
+	// the parent pushes its changes down. The ancestors are attached first. A stripe is not a child, its striped bus is attached instead.
+	private void attach()
+	{
+		if (this.attached)
+		{
+			return;
+		}
+		if (this.owner != null)
+		{
+			this.owner.attach();
+		}
+		else if (this.parentBus != null)
+		{
+			this.parentBus.attach();
+			this.parentBus.addChild(this);
+		}
+	}
+
+	// Keep a weak reference to a new child, a child is only added once.
+	private void addChild(MessageBus aChild)
+	{
+		expungeChildren();
+		synchronized (this.children)
+		{
+			if (aChild.attached)
+			{
+				return;
+			}
+			this.children.add(new ChildRef(aChild, this.collectedChildren));
+			aChild.attached = true;
+		}
+		subtreeChanged();
+	}
+
+	// Remove the children that were collected.
+	private void expungeChildren()
+	{
+		Reference<? extends MessageBus> lRef = this.collectedChildren.poll();
+		if (lRef == null)
+		{
+			return;
+		}
+		synchronized (this.children)
+		{
+			// The references are removed in one pass over the list.
+			final Set<Reference<? extends MessageBus>> lCollected = new HashSet<Reference<? extends MessageBus>>();
+			for (; lRef != null; lRef = this.collectedChildren.poll())
+			{
+				lCollected.add(lRef);
+			}
+			this.children.removeAll(lCollected);
+		}
+		subtreeChanged();
+	}
+
+	// The children that were not collected, the lock of the list is not held while they are used.
+	private List<MessageBus> liveChildren()
+	{
+		synchronized (this.children)
+		{
+			if (this.children.isEmpty())
+			{
+				return Collections.<MessageBus>emptyList();
+			}
+			final List<MessageBus> lChildren = new ArrayList<MessageBus>(this.children.size());
+			for (ChildRef lRef : this.children)
+			{
+				final MessageBus lChild = lRef.get();
+				if (lChild != null)
+				{
+					lChildren.add(lChild);
+				}
+			}
+			return lChildren;
+		}
+	}
+
+	/**
+	 * The number of child buses that were used and that were not garbage collected.
+	 *
+	 * @return The number of buses that have this bus as their parent.
+	 */
+	public int getNrChildren()
+	{
+		expungeChildren();
+		synchronized (this.children)
+		{
+			int lCount = 0;
+			for (ChildRef lRef : this.children)
+			{
+				if (lRef.get() != null) lCount++;
+			}
+			return lCount;
+		}
+	}
+
+	// Call the handlers one after the other until one of them consumes the event. The handlers that accept the event
+	// are merged with the handlers bound to the source of the event, in delivery order. The bound handlers can
+	// belong to other sources with the same identity hash, these are skipped.
+	// Handlers of collected subscribers do nothing, they are removed with the help of the reference queue.
+	private static boolean notifyHandlers(EventObject aEvent, String aProperty, HandlerList aHandlers, HandlerList aBound, DeliveryErrorHandler aErrorHandler)
+	{
+		final int lNrHandlers = aHandlers.size();
+		final int lNrBound = aBound.size();
+		boolean lHandled = false;
+		int i = 0;
+		int j = 0;
+		while (!lHandled)
+		{
+			while ((j < lNrBound) && !aBound.acceptsBound(j, aEvent.getSource(), aEvent.getClass(), aProperty))
+			{
+				j++;
+			}
+
+			if ((j < lNrBound) && ((i == lNrHandlers) || aBound.precedes(j, aHandlers, i)))
+			{
+				lHandled = notifyHandler(aBound, j++, aEvent, aErrorHandler);
+			}
+			else if (i < lNrHandlers)
+			{
+				lHandled = notifyHandler(aHandlers, i++, aEvent, aErrorHandler);
+			}
+			else
+			{
+				break;
+			}
+		}
+		return lHandled;
+	}
+
+	// Call the compiled handlers of a route, the result tells if one of them consumed the event.
+	private static boolean notifyChain(MethodHandle aChain, EventObject aEvent, String aProperty)
+	{
+		try
+		{
+			return (boolean) aChain.invokeExact(aEvent, aProperty);
+		}
+		catch (RuntimeException | Error e)
+		{
+			throw e;
+		}
+		catch (Throwable e)
+		{
+			// The chain wraps the checked exceptions of the handlers, this should not happen.
+			throw new IllegalStateException(e);
+		}
+	}
+
+	// Call a single handler, the result tells if the handler consumed the event.
+	private static boolean notifyHandler(HandlerList aHandlers, int aIndex, EventObject aEvent, DeliveryErrorHandler aErrorHandler)
+	{
+		if (aErrorHandler == null)
+		{
+			return aHandlers.notify(aIndex, aEvent);
+		}
+
+		try
+		{
+			return aHandlers.notify(aIndex, aEvent);
+		}
+		catch (RuntimeException e)
+		{
+			aErrorHandler.deliveryFailed(aEvent, e);
+			return false;
+		}
+	}
+
+	// Spread the bits of an identity hash, the low bits are used to select a slot.
+	static int spread(int aHash)
+	{
+		return aHash ^ (aHash >>> 16);
+	}
+
+	// The name of the property for the property change events, null for other events.
+	// A property change event without name is about all properties of the source.
+	private static String propertyName(EventObject aEvent)
+	{
+		final String lName;
+		if (aEvent instanceof PropertyChangeEvent)
+		{
+			lName = ((PropertyChangeEvent) aEvent).getPropertyName();
+		}
+		else if (aEvent instanceof AbstractCollectionPropertyChangeEvent)
+		{
+			lName = ((AbstractCollectionPropertyChangeEvent) aEvent).getName();
+		}
+		else if (aEvent instanceof VetoablePropertyChangeEvent)
+		{
+			lName = ((VetoablePropertyChangeEvent) aEvent).getName();
+		}
+		else if (aEvent instanceof VetoableIndexedPropertyChangeEvent)
+		{
+			lName = ((VetoableIndexedPropertyChangeEvent) aEvent).getName();
+		}
+		else
+		{
+			return null;
+		}
+		return (lName == null) ? HandlerMethod.ALL_PROPERTIES : lName;
+	}
+
+	// The snapshot of the observers, a limited number of collected subscribers is removed first.
+	// The publishers do not take the bus lock unless there are collected subscribers.
+	private Snapshot currentSnapshot()
+	{
+		expungeCollected(EXPUNGE_LIMIT);
+		return this.snapshot;
+	}
+
+	// Remove the handlers of collected subscribers, they are found on the reference queue. At most the specified
+	// number of handlers is removed, so that no caller is held up for long. Polling an empty queue is cheap.
+	private void expungeCollected(int aMax)
+	{
+		Reference<?> lRef = this.collected.poll();
+		if (lRef == null)
+		{
+			return;
+		}
+
+		synchronized (this)
+		{
+			int lCount = 0;
+			while (lRef != null)
+			{
+				// The reference is either the one to a subscriber or the one to the source of a bound handler.
+				final SubscriberInfo lInfo = (lRef instanceof SubscriberInfo.SourceRef) ? ((SubscriberInfo.SourceRef) lRef).info : (SubscriberInfo) lRef;
+				if (this.registry.remove(lInfo))
+				{
+					this.removedSinceSnapshot++;
+				}
+				if (++lCount >= aMax)
+				{
+					break;
+				}
+				lRef = this.collected.poll();
+			}
+
+			// The publishers skip collected handlers, the snapshot is only replaced if it contains a lot of them.
+			if (this.removedSinceSnapshot > (this.snapshot.size() >> 1))
+			{
+				rebuild();
+			}
+		}
+	}
+
+	/**
+	 * The number of handler methods.
+	 * If a bean has multiple handlers, each method will be counted separately.
+	 * Handlers of subscribers that were garbage collected are not counted.
+	 * 
+	 * @return The number of handler methods registered to this bus. 
+	 */
+    public synchronized int getNrSubscribers()
+    {
+        // The garbage collector might not have queued all cleared references yet.
+        expungeCollected(Integer.MAX_VALUE);
+        if (registry.removeGarbage())
+        {
+            rebuild();
+        }
+        return registry.nrHandlers();
+    }
+
+	/**
+	 * Set the executor that delivers the {@link #publishAsync(EventObject) asynchronous} publications.
+	 *
+	 * @param aExecutor The executor, null if asynchronous delivery is not supported.
+	 */
+	public void setExecutor(Executor aExecutor)
+	{
+		this.executor = aExecutor;
+	}
+
+	/**
+	 * Set the callback for handlers that fail during an asynchronous delivery. By default, the error is passed to the
+	 * uncaught exception handler of the thread that delivers the event.
+	 *
+	 * @param aErrorHandler The callback.
+	 */
+	public void setErrorHandler(DeliveryErrorHandler aErrorHandler)
+	{
+		this.errorHandler = (aErrorHandler == null) ? DEFAULT_ERROR_HANDLER : aErrorHandler;
+	}
+
+	/**
+	 * Switch the asynchronous mode of the bus. In asynchronous mode {@link #publish(EventObject)} behaves
+	 * like {@link #publishAsync(EventObject)}, so the property implementations that publish on this bus
+	 * no longer wait for the handlers. Vetoable events remain synchronous in this mode.
+	 * The bus needs an {@link #setExecutor(Executor) executor} in this mode.
+	 *
+	 * @param aAsynchronous True to deliver the events asynchronously.
+	 */
+	public void setAsynchronous(boolean aAsynchronous)
+	{
+		this.asynchronous = aAsynchronous;
+		interestChanged();
+	}
+
+	/**
+	 * <p>Call the handlers of an asynchronous publication in parallel, each handler receives the event in a separate task of the
+	 * {@link #setExecutor(Executor) executor}. Combined with a {@link VirtualThreadExecutor} each delivery gets a virtual thread of its own,
+	 * so handlers that block do not hold up the others. The handlers cannot consume the event in this mode,
+	 * the result of the handlers is ignored and the event always reaches the parent bus.
+	 *
+	 * <p>Synchronous publications and vetoable events are not affected, use {@link #publish(EventObject)} on a synchronous bus
+	 * if the consumption of events is needed.
+	 *
+	 * @param aParallel True to deliver the event to each handler in a separate task.
+	 */
+	public void setParallelDelivery(boolean aParallel)
+	{
+		this.parallelDelivery = aParallel;
+	}
+
+	/**
+	 * <p>Switch the sticky mode of the bus on or off. In sticky mode the bus remembers the most recent event for each combination
+	 * of event class, source and property name. When a subscriber is registered, the remembered events that it accepts are delivered
+	 * to it right away, so a view that is created late can initialize itself from the events it missed. The other subscribers
+	 * do not receive these events again. Events that can be vetoed are not remembered.
+	 * 
+	 * <p>The number of remembered events is limited, if there are more combinations the event that was published the longest time ago
+	 * is forgotten. The bus keeps strong references to the remembered events and their sources. Changing the mode forgets all events.
+	 * 
+	 * @param aCapacity The maximum number of remembered events, 0 switches the sticky mode off.
+	 */
+	public void setSticky(int aCapacity)
+	{
+		if (aCapacity < 0) throw new IllegalArgumentException("The capacity of the sticky cache cannot be negative.");
+		this.sticky = (aCapacity == 0) ? null : new StickyCache(aCapacity);
+		attach();
+		interestChanged();
+		subtreeChanged();
+	}
+
+	/**
+	 * <p>Switch the compiled dispatch of the bus on or off. Normally the bus calls the handlers of an event one by one from a single
+	 * loop, so the JIT sees a call site with many different handlers and cannot inline them. With compiled dispatch the bus counts the
+	 * publications per event class and source class, and once a combination was published the specified number of times its handlers
+	 * are compiled into a single chain of method handles. The JIT can inline the whole chain, including the consumption checks.
+	 * 
+	 * <p>A change of the subscribers drops the chains, they are compiled again when their events are hot again. Only the synchronous
+	 * deliveries use the chains, and only if there are at most 16 handlers for the event and none of them is bound to the source.
+	 * The other deliveries call the handlers one by one, the result is the same.
+	 * 
+	 * @param aThreshold The number of publications before the handlers of an event are compiled, 0 switches the compiled dispatch off.
+	 */
+	public void setCompiledDispatch(int aThreshold)
+	{
+		if (aThreshold < 0) throw new IllegalArgumentException("The compile threshold cannot be negative.");
+		this.compileThreshold = aThreshold;
+	}
 }
@@ -0,0 +1,160 @@
+/*
+ * Library "lib-messagebus".
+ * Copyright (c) 2011 Bruno Ranschaert, SDI-Consulting BVBA.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sdicons.bus;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.EventObject;
+
+/**
+ * <p>Creates invokers that call the handler methods through a {@link MethodHandle}. The handle is adapted once
+ * to the signature <code>(Object, EventObject)boolean</code>, so a call does not need an argument array and the
+ * boolean result of the handler is never boxed. Handlers returning a <code>Boolean</code> or an <code>Object</code> are
+ * interpreted in the same way as the reflective strategy does.
+ *
+ * <p>If no handle can be obtained for a method, the factory falls back on the {@link ReflectiveInvokerFactory reflective} strategy.
+ * This is the default strategy of the {@link MessageBus}.
+ */
+public class MethodHandleInvokerFactory
+implements HandlerInvokerFactory
+{
+    private static final MethodType INVOKER_TYPE = MethodType.methodType(boolean.class, Object.class, EventObject.class);
+
+    // Converts the result of a handler with a reference return type.
+    private static final MethodHandle IS_TRUE;
+    // Result of a handler that does not return a boolean.
+    private static final MethodHandle FALSE = MethodHandles.constant(boolean.class, false);
+
+    static
+    {
+        try
+        {
+            IS_TRUE = MethodHandles.lookup().findStatic(MethodHandleInvokerFactory.class, "isTrue", MethodType.methodType(boolean.class, Object.class));
+        }
+        catch (Exception e)
+        {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private static class MethodHandleInvoker
+    implements HandlerInvoker
+    {
+        private final MethodHandle handle;
+
+        private MethodHandleInvoker(MethodHandle aHandle)
+        {
+            handle = aHandle;
+        }
+
+        public boolean invoke(Object aSubscriber, EventObject aEvent)
+        throws InvocationTargetException
+        {
+            try
+            {
+                return (boolean) handle.invokeExact(aSubscriber, aEvent);
+            }
+            catch (Throwable e)
+            {
+                // Same contract as reflection, exceptions of the handler are wrapped.
+                throw new InvocationTargetException(e);
+            }
+        }
+    }
+
+    private final HandlerInvokerFactory fallback = new ReflectiveInvokerFactory();
+
+    public HandlerInvoker createInvoker(Method aMethod)
+    {
+        MethodHandle lHandle = unreflect(aMethod);
+        if (lHandle == null)
+        {
+            return fallback.createInvoker(aMethod);
+        }
+        if (Modifier.isStatic(aMethod.getModifiers()))
+        {
+            // A static handler has no receiver, the subscriber is ignored.
+            lHandle = MethodHandles.dropArguments(lHandle, 0, Object.class);
+        }
+        return new MethodHandleInvoker(adapt(lHandle, aMethod.getReturnType()));
+    }
+
+    // The handle behind an invoker of this factory, null for the other invokers.
+    // The handle does not wrap the exceptions of the handler.
+    static MethodHandle handleOf(HandlerInvoker aInvoker)
+    {
+        return (aInvoker instanceof MethodHandleInvoker) ? ((MethodHandleInvoker) aInvoker).handle : null;
+    }
+
+    // Get a handle for a public method. The class containing the method might not be public,
+    // in that case we try to suppress the access checks.
+    private static MethodHandle unreflect(Method aMethod)
+    {
+        try
+        {
+            return MethodHandles.publicLookup().unreflect(aMethod);
+        }
+        catch (IllegalAccessException e)
+        {
+            try
+            {
+                aMethod.setAccessible(true);
+                return MethodHandles.lookup().unreflect(aMethod);
+            }
+            catch (Exception ex)
+            {
+                return null;
+            }
+        }
+    }
+
+    // Adapt the handle of the handler method to the invoker signature.
+    private static MethodHandle adapt(MethodHandle aHandle, Class<?> aReturnType)
+    {
+        final MethodHandle lHandle;
+        if (aReturnType == boolean.class)
+        {
+            lHandle = aHandle;
+        }
+        else if (aReturnType.isPrimitive())
+        {
+            // Includes void, the result is ignored.
+            lHandle = MethodHandles.filterReturnValue(aHandle.asType(aHandle.type().changeReturnType(void.class)), FALSE);
+        }
+        else
+        {
+            lHandle = MethodHandles.filterReturnValue(aHandle.asType(aHandle.type().changeReturnType(Object.class)), IS_TRUE);
+        }
+        return lHandle.asType(INVOKER_TYPE);
+    }
+
+    private static boolean isTrue(Object aResult)
+    {
+        return (aResult instanceof Boolean) && (Boolean) aResult;
+    }
+}
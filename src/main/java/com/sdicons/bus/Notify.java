@@ -35,10 +35,18 @@ import java.lang.annotation.Target;
  * Other filtering is possible:
  * <ul><li><b>'sourceType'</b> the class of the source of the event. The handler will be called if the event is assignable to this parameter.</li>
  *     <li><b>'allowNullSource'</b> indicating if the handler can be called if the source of the event is not filled in.</li>
+ *     <li><b>'priority'</b> handlers with a higher priority are called before the handlers with a lower priority, handlers with the
+ *     same priority are called in registration order. The default priority is 0.</li>
+ *     <li><b>'property'</b> the name of the property. The handler will only be called for property change events of this property,
+ *     other events are not passed to the handler. The bus keeps the handlers in a table per property name, so the handler is not
+ *     bothered with changes of other properties. An event without property name means that all properties might have changed,
+ *     it is passed to every handler.</li>
  * </ul>
  * <p> If the return value of the handler is a boolean, and it is 'true' than the other handlers will not be called.
  * It means that the event is handled and should not be handled by another handler, the event was 'consumed' by the handler.
  * 
+ * <p>A handler with a high priority can consume the events before the other handlers see them, for example a cache or a filter.
+ * 
  * <p>All events should be derived from the standard Java java.util.EventObject as all events are. This is not really a restriction since
  * it contains the source of the event (which can be null), and we can filter on the type of this.
  * 
@@ -48,6 +56,15 @@ import java.lang.annotation.Target;
  *     // Event handling code.
  * } </pre>
  * 
+ * <p>The property name is taken from the {@link java.beans.PropertyChangeEvent PropertyChangeEvent} and from the events of the
+ * property package, these are the events published by the properties and by the client properties.
+ * 
+ * <pre> @Notify(property = "price")
+ * public void priceChanged(PropertyChangeEvent aEvent)
+ * {
+ *     // Only changes of the price arrive here.
+ * } </pre>
+ * 
  */
 @Retention(value= RetentionPolicy.RUNTIME)
 @Target(ElementType.METHOD)
@@ -55,4 +72,6 @@ public @interface Notify
 {
     Class<?> sourceType() default Object.class;
     boolean allowNullSource() default true;
+    String property() default "";
+    int priority() default 0;
 }
\ No newline at end of file
@@ -0,0 +1,91 @@
+/*
+ * Library "lib-messagebus".
+ * Copyright (c) 2011 Bruno Ranschaert, SDI-Consulting BVBA.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sdicons.bus;
+
+import com.sdicons.bus.processor.NotifyProcessor;
+
+import java.util.ArrayList;
+import java.util.EventObject;
+import java.util.List;
+
+/**
+ * <p>Base class of the dispatchers that the {@link NotifyProcessor annotation processor} generates for the classes with
+ * {@link Notify} methods. A dispatcher describes the handlers of its class and calls them directly, so the bus does not scan
+ * the class with reflection and the handlers are not called through reflection or method handles.
+ *
+ * <p>The dispatcher of a class has the name of the class with the suffix {@value #SUFFIX}, in the same package. The bus uses it
+ * when an instance of the class is registered, classes without dispatcher are scanned with reflection as before.
+ * The dispatchers are generated code, they are not meant to be written by hand.
+ */
+public abstract class NotifyDispatcher
+{
+    /**
+     * The suffix of the name of a dispatcher class.
+     */
+    public static final String SUFFIX = "$$NotifyDispatcher";
+
+    private final List<HandlerMethod> handlers = new ArrayList<HandlerMethod>();
+
+    /**
+     * Describe a handler of the class, the filters are the attributes of the {@link Notify} annotation.
+     *
+     * @param aName The name of the handler method.
+     * @param aParameterType The type of the events the handler accepts.
+     * @param aSourceType The type of the sources the handler accepts.
+     * @param aAllowNullSource Does the handler accept events without source?
+     * @param aProperty The name of the property, an empty string for all events.
+     * @param aPriority The priority of the handler.
+     * @param aInvoker Calls the handler method.
+     */
+    protected final void handler(String aName, Class<? extends EventObject> aParameterType, Class<?> aSourceType, boolean aAllowNullSource, String aProperty, int aPriority, HandlerInvoker aInvoker)
+    {
+        final String lProperty = (aProperty.length() == 0) ? null : aProperty;
+        handlers.add(new HandlerMethod(handlers.size(), aName, aInvoker, aParameterType, aSourceType, aAllowNullSource, lProperty, aPriority));
+    }
+
+    // The handlers in the order of the class.
+    HandlerMethod[] getHandlers()
+    {
+        return handlers.toArray(new HandlerMethod[handlers.size()]);
+    }
+
+    // Create the dispatcher of the class, null if there is none.
+    static NotifyDispatcher find(Class<?> aClass)
+    {
+        try
+        {
+            final Class<?> lDispatcher = Class.forName(aClass.getName() + SUFFIX, true, aClass.getClassLoader());
+            if (NotifyDispatcher.class.isAssignableFrom(lDispatcher))
+            {
+                return (NotifyDispatcher) lDispatcher.getConstructor().newInstance();
+            }
+            return null;
+        }
+        catch (ReflectiveOperationException | LinkageError e)
+        {
+            // There is no dispatcher or it cannot be used, the class is scanned with reflection.
+            return null;
+        }
+    }
+}
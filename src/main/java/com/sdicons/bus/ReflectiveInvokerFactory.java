@@ -0,0 +1,61 @@
+/*
+ * Library "lib-messagebus".
+ * Copyright (c) 2011 Bruno Ranschaert, SDI-Consulting BVBA.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sdicons.bus;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.EventObject;
+
+/**
+ * Creates invokers that call the handler methods using {@link Method#invoke(Object, Object...) reflection}.
+ * This is the slowest strategy, but it works in every environment.
+ *
+ * @see MethodHandleInvokerFactory
+ */
+public class ReflectiveInvokerFactory
+implements HandlerInvokerFactory
+{
+    private static class ReflectiveInvoker
+    implements HandlerInvoker
+    {
+        private Method method;
+
+        private ReflectiveInvoker(Method aMethod)
+        {
+            method = aMethod;
+        }
+
+        public boolean invoke(Object aSubscriber, EventObject aEvent)
+        throws InvocationTargetException, IllegalAccessException
+        {
+            final Object lResult = method.invoke(aSubscriber, aEvent);
+            return (lResult instanceof Boolean) && (Boolean) lResult;
+        }
+    }
+
+    public HandlerInvoker createInvoker(Method aMethod)
+    {
+        return new ReflectiveInvoker(aMethod);
+    }
+}
@@ -0,0 +1,331 @@
+/*
+ * Library "lib-messagebus".
+ * Copyright (c) 2011 Bruno Ranschaert, SDI-Consulting BVBA.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sdicons.bus;
+
+import com.sdicons.prop.VetoableEvent;
+
+import java.util.EventObject;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <p>A preallocated ring buffer in front of a {@link MessageBus}, for producers that publish bursts of events at a high rate.
+ * Producers claim a slot in the ring and store their event in it, a consumer thread publishes the events on the bus in sequence order.
+ * Putting an event in the ring does not allocate memory and does not take a lock, the producers and the consumer only coordinate
+ * through sequence numbers.
+ *
+ * <ul><li>{@link ProducerType#SINGLE} can be used if a single thread publishes events, claiming a slot is a plain increment.</li>
+ *     <li>{@link ProducerType#MULTI} allows any number of producer threads, they claim slots with an atomic increment.</li>
+ * </ul>
+ *
+ * <p>The {@link WaitStrategy} decides what the consumer does while the ring is empty, and what a producer does while the ring is full.
+ * Busy spinning gives the lowest latency but it occupies a core, parking is the most friendly to the other threads.
+ *
+ * <p>Errors of the handlers are passed to the {@link #setErrorHandler(DeliveryErrorHandler) error handler}. {@link VetoableEvent Vetoable} events
+ * do not pass through the ring, they are published synchronously so that the veto reaches the producer.
+ *
+ * <pre> RingBufferPublisher ring = new RingBufferPublisher(bus, 65536, ProducerType.MULTI, WaitStrategy.YIELD);
+ * ring.start();
+ * ring.publish(event);
+ * ...
+ * ring.close();</pre>
+ */
+public class RingBufferPublisher
+{
+    /**
+     * The way producers claim slots in the ring.
+     */
+    public enum ProducerType
+    {
+        /** Only a single thread publishes events. */
+        SINGLE,
+        /** Multiple threads publish events. */
+        MULTI
+    }
+
+    /**
+     * The behavior of a thread that has to wait for the ring.
+     */
+    public enum WaitStrategy
+    {
+        /** Keep the thread running, the lowest latency. */
+        BUSY_SPIN
+        {
+            void idle()
+            {
+                // Try again immediately.
+            }
+        },
+        /** Give the other threads a chance to run. */
+        YIELD
+        {
+            void idle()
+            {
+                Thread.yield();
+            }
+        },
+        /** Sleep for a short time, frees the core for other work. */
+        PARK
+        {
+            void idle()
+            {
+                LockSupport.parkNanos(PARK_NANOS);
+            }
+        };
+
+        abstract void idle();
+    }
+
+    // The time a parked thread waits before it checks the ring again.
+    private static final long PARK_NANOS = 50000L;
+
+    private final MessageBus bus;
+    private final ProducerType producerType;
+    private final WaitStrategy waitStrategy;
+
+    // The slots of the ring, the size is a power of two.
+    private final EventObject[] entries;
+    private final int mask;
+    private final int shift;
+
+    // Single producer, the last claimed sequence. Only used by the producer thread.
+    private long claimed = -1L;
+    // Single producer, the last sequence that was published.
+    private final AtomicLong cursor = new AtomicLong(-1L);
+
+    // Multiple producers, the next sequence to claim.
+    private final AtomicLong nextClaim = new AtomicLong(0L);
+    // Multiple producers, for each slot the round of the ring in which it was published.
+    private final AtomicIntegerArray published;
+
+    // The last sequence that was delivered by the consumer.
+    private final AtomicLong consumed = new AtomicLong(-1L);
+    // The last value of the consumer sequence seen by a single producer.
+    private long consumedCache = -1L;
+
+    private volatile DeliveryErrorHandler errorHandler = MessageBus.DEFAULT_ERROR_HANDLER;
+    private volatile boolean running;
+    private Thread consumer;
+
+    /**
+     * Create a ring buffer in front of a bus.
+     *
+     * @param aBus The bus that delivers the events.
+     * @param aSize The number of slots, it is rounded up to a power of two.
+     * @param aProducerType Is there a single producer thread or are there more?
+     * @param aWaitStrategy The behavior of the consumer on an empty ring and of the producers on a full ring.
+     */
+    public RingBufferPublisher(MessageBus aBus, int aSize, ProducerType aProducerType, WaitStrategy aWaitStrategy)
+    {
+        if (aSize <= 0 || aSize > (1 << 30)) throw new IllegalArgumentException("The size of the ring should be between 1 and 2^30.");
+        final int lSize = (aSize == 1) ? 1 : Integer.highestOneBit(aSize - 1) << 1;
+
+        bus = aBus;
+        producerType = aProducerType;
+        waitStrategy = aWaitStrategy;
+        entries = new EventObject[lSize];
+        mask = lSize - 1;
+        shift = Integer.numberOfTrailingZeros(lSize);
+        published = new AtomicIntegerArray(lSize);
+        for (int i = 0; i < lSize; i++)
+        {
+            published.set(i, -1);
+        }
+    }
+
+    /**
+     * Set the callback for handlers that fail, by default the error is passed to the uncaught exception handler of the consumer thread.
+     *
+     * @param aErrorHandler The callback.
+     */
+    public void setErrorHandler(DeliveryErrorHandler aErrorHandler)
+    {
+        errorHandler = (aErrorHandler == null) ? MessageBus.DEFAULT_ERROR_HANDLER : aErrorHandler;
+    }
+
+    /**
+     * The number of slots in the ring.
+     *
+     * @return The capacity of the ring.
+     */
+    public int getCapacity()
+    {
+        return entries.length;
+    }
+
+    /**
+     * Start the consumer on a new daemon thread.
+     */
+    public void start()
+    {
+        start(new ThreadFactory()
+        {
+            public Thread newThread(Runnable aTask)
+            {
+                final Thread lThread = new Thread(aTask, "messagebus-ring");
+                lThread.setDaemon(true);
+                return lThread;
+            }
+        });
+    }
+
+    /**
+     * Start the consumer on a thread of the factory.
+     *
+     * @param aFactory Creates the consumer thread.
+     */
+    public synchronized void start(ThreadFactory aFactory)
+    {
+        if (consumer != null) throw new IllegalStateException("The ring buffer was already started.");
+        running = true;
+        consumer = aFactory.newThread(new Runnable()
+        {
+            public void run()
+            {
+                consume();
+            }
+        });
+        consumer.start();
+    }
+
+    /**
+     * Stop the consumer, the events that were published before are still delivered.
+     * The producers should have stopped publishing before the ring is closed.
+     *
+     * @throws InterruptedException If the thread is interrupted while waiting for the consumer.
+     */
+    public void close()
+    throws InterruptedException
+    {
+        final Thread lConsumer;
+        synchronized (this)
+        {
+            running = false;
+            lConsumer = consumer;
+        }
+        if (lConsumer != null && lConsumer != Thread.currentThread())
+        {
+            lConsumer.join();
+        }
+    }
+
+    /**
+     * Put an event in the ring. If the ring is full the producer waits until the consumer has freed a slot.
+     *
+     * @param aEvent The event to be published on the bus.
+     */
+    public void publish(EventObject aEvent)
+    {
+        if (aEvent == null) throw new IllegalArgumentException("Cannot publish a null event.");
+        if (!running) throw new IllegalStateException("The ring buffer is not running.");
+        if (aEvent instanceof VetoableEvent)
+        {
+            bus.publish(aEvent);
+            return;
+        }
+
+        if (producerType == ProducerType.SINGLE)
+        {
+            final long lSequence = ++claimed;
+            final long lWrapPoint = lSequence - entries.length;
+            while (lWrapPoint > consumedCache)
+            {
+                consumedCache = consumed.get();
+                if (lWrapPoint > consumedCache) waitStrategy.idle();
+            }
+            entries[(int) lSequence & mask] = aEvent;
+            cursor.lazySet(lSequence);
+        }
+        else
+        {
+            final long lSequence = nextClaim.getAndIncrement();
+            final long lWrapPoint = lSequence - entries.length;
+            while (lWrapPoint > consumed.get())
+            {
+                waitStrategy.idle();
+            }
+            final int lIndex = (int) lSequence & mask;
+            entries[lIndex] = aEvent;
+            // The ordered write makes the entry visible to the consumer.
+            published.lazySet(lIndex, (int) (lSequence >>> shift));
+        }
+    }
+
+    // The highest sequence that the consumer can deliver, starting at the specified sequence.
+    private long highestPublished(long aNext)
+    {
+        if (producerType == ProducerType.SINGLE)
+        {
+            return cursor.get();
+        }
+
+        long lSequence = aNext;
+        while (published.get((int) lSequence & mask) == (int) (lSequence >>> shift))
+        {
+            lSequence++;
+        }
+        return lSequence - 1;
+    }
+
+    // The consumer loop, it delivers the events in sequence order until the ring is closed and empty.
+    private void consume()
+    {
+        long lNext = consumed.get() + 1;
+        while (true)
+        {
+            final long lAvailable = highestPublished(lNext);
+            if (lAvailable < lNext)
+            {
+                if (!running && highestPublished(lNext) < lNext) break;
+                waitStrategy.idle();
+                continue;
+            }
+
+            for (long lSequence = lNext; lSequence <= lAvailable; lSequence++)
+            {
+                final int lIndex = (int) lSequence & mask;
+                final EventObject lEvent = entries[lIndex];
+                entries[lIndex] = null;
+                deliver(lEvent);
+            }
+            // Free the slots for the producers.
+            consumed.lazySet(lAvailable);
+            lNext = lAvailable + 1;
+        }
+    }
+
+    private void deliver(EventObject aEvent)
+    {
+        try
+        {
+            bus.publish(aEvent);
+        }
+        catch (RuntimeException e)
+        {
+            errorHandler.deliveryFailed(aEvent, e);
+        }
+    }
+}
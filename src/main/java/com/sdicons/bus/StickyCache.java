@@ -0,0 +1,110 @@
+/*
+ * Library "lib-messagebus".
+ * Copyright (c) 2011 Bruno Ranschaert, SDI-Consulting BVBA.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sdicons.bus;
+
+import java.util.EventObject;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The most recent events that were published on a bus, one for each combination of event class, source and property name.
+ * The number of events is limited, when the cache is full the event that was published the longest time ago is evicted.
+ * The cache keeps strong references to the events and so to their sources, the capacity limits the memory that is held.
+ * The cache is thread safe.
+ */
+class StickyCache
+{
+	// Identifies the events that replace each other, the source is compared on identity.
+	private static class Key
+	{
+		private final Class<?> eventClass;
+		private final Object source;
+		private final String property;
+		private final int hash;
+
+		private Key(Class<?> aEventClass, Object aSource, String aProperty)
+		{
+			this.eventClass = aEventClass;
+			this.source = aSource;
+			this.property = aProperty;
+			this.hash = (31 * ((31 * aEventClass.hashCode()) + System.identityHashCode(aSource))) + ((aProperty == null) ? 0 : aProperty.hashCode());
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return this.hash;
+		}
+
+		@Override
+		public boolean equals(Object aOther)
+		{
+			if (!(aOther instanceof Key))
+			{
+				return false;
+			}
+			final Key lOther = (Key) aOther;
+			return (this.eventClass == lOther.eventClass) && (this.source == lOther.source) &&
+				((this.property == null) ? (lOther.property == null) : this.property.equals(lOther.property));
+		}
+	}
+
+	private final int capacity;
+	// The events in the order in which they were published, the oldest one first. It is guarded by the cache lock.
+	private final LinkedHashMap<Key, EventObject> events;
+
+	StickyCache(int aCapacity)
+	{
+		this.capacity = aCapacity;
+		this.events = new LinkedHashMap<Key, EventObject>(16, 0.75f, false)
+		{
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, EventObject> aEldest)
+			{
+				return size() > StickyCache.this.capacity;
+			}
+		};
+	}
+
+	int getCapacity()
+	{
+		return this.capacity;
+	}
+
+	// Remember an event, it replaces the previous event with the same key. A change of all properties is kept without name,
+	// it does not replace the changes of the single properties.
+	// The event is moved to the end, so the eviction follows the order of publication.
+	synchronized void put(EventObject aEvent, String aProperty)
+	{
+		final Key lKey = new Key(aEvent.getClass(), aEvent.getSource(), (aProperty == HandlerMethod.ALL_PROPERTIES) ? null : aProperty);
+		this.events.remove(lKey);
+		this.events.put(lKey, aEvent);
+	}
+
+	// The remembered events, the oldest one first.
+	synchronized EventObject[] toArray()
+	{
+		return this.events.values().toArray(new EventObject[this.events.size()]);
+	}
+}
@@ -0,0 +1,336 @@
+/*
+ * Library "lib-messagebus".
+ * Copyright (c) 2011 Bruno Ranschaert, SDI-Consulting BVBA.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sdicons.bus;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EventObject;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import java.util.function.Predicate;
+
+/**
+ * <p>A message bus that is split in independent stripes, the stripe of an event is chosen by the hash of its class.
+ * Each stripe is a complete {@link MessageBus} with its own registry, dispatch tables, sticky cache and optionally its own
+ * {@link #setExecutors(IntFunction) executor}. Publishers of unrelated event types, for example list changes and client property
+ * changes, work on different stripes and do not share any state that changes during a publication.
+ *
+ * <p>A handler can accept the events of many classes, so the subscribers are registered in every stripe. Registration costs
+ * and memory grow with the number of stripes, the striped bus is meant for a bus with many publishers and a stable set of subscribers.
+ * The events of a single class are delivered in publication order, there is no order between events of classes in different stripes.
+ *
+ * <pre> MessageBus bus = new StripedMessageBus(16);
+ * ListProperty&lt;String&gt; names = new ListProperty&lt;String&gt;(bus, "names");</pre>
+ */
+public class StripedMessageBus
+extends MessageBus
+{
+    private final MessageBus[] stripes;
+    private final int mask;
+
+    /**
+     * Create a striped bus with a parent, the events that are not consumed in a stripe are passed to the parent.
+     *
+     * @param aParent The parent bus, can be null.
+     * @param aNrStripes The number of stripes, it is rounded up to a power of two.
+     */
+    public StripedMessageBus(MessageBus aParent, int aNrStripes)
+    {
+        super(aParent);
+        if (aNrStripes <= 0 || aNrStripes > (1 << 16)) throw new IllegalArgumentException("The number of stripes should be between 1 and 2^16.");
+        final int lSize = (aNrStripes == 1) ? 1 : Integer.highestOneBit(aNrStripes - 1) << 1;
+
+        stripes = new MessageBus[lSize];
+        for (int i = 0; i < lSize; i++)
+        {
+            stripes[i] = createPeer();
+        }
+        mask = lSize - 1;
+    }
+
+    /**
+     * Create a striped bus without parent.
+     *
+     * @param aNrStripes The number of stripes, it is rounded up to a power of two.
+     */
+    public StripedMessageBus(int aNrStripes)
+    {
+        this(null, aNrStripes);
+    }
+
+    /**
+     * The number of stripes of the bus.
+     *
+     * @return The number of stripes, a power of two.
+     */
+    public int getNrStripes()
+    {
+        return stripes.length;
+    }
+
+    // The stripe that handles the events of the specified class.
+    private MessageBus stripeFor(Class<?> aEventClass)
+    {
+        return stripes[spread(aEventClass.hashCode()) & mask];
+    }
+
+    @Override
+    public void register(Object aSubscriber)
+    {
+        for (MessageBus lStripe : stripes)
+        {
+            lStripe.register(aSubscriber);
+        }
+    }
+
+    @Override
+    public void register(Object aSubscriber, Object aSource)
+    {
+        if (aSource == null) throw new IllegalArgumentException("The source of a subscription cannot be null.");
+        for (MessageBus lStripe : stripes)
+        {
+            lStripe.register(aSubscriber, aSource);
+        }
+    }
+
+    @Override
+    public <E extends EventObject> Subscription subscribe(Class<E> aEventClass, Consumer<? super E> aHandler)
+    {
+        final Subscription[] lSubscriptions = new Subscription[stripes.length];
+        for (int i = 0; i < stripes.length; i++)
+        {
+            lSubscriptions[i] = stripes[i].subscribe(aEventClass, aHandler);
+        }
+        return join(lSubscriptions);
+    }
+
+    @Override
+    public <E extends EventObject> Subscription intercept(Class<E> aEventClass, int aPriority, Predicate<? super E> aHandler)
+    {
+        final Subscription[] lSubscriptions = new Subscription[stripes.length];
+        for (int i = 0; i < stripes.length; i++)
+        {
+            lSubscriptions[i] = stripes[i].intercept(aEventClass, aPriority, aHandler);
+        }
+        return join(lSubscriptions);
+    }
+
+    // A subscription that ends the subscriptions in all stripes.
+    private static Subscription join(final Subscription[] aSubscriptions)
+    {
+        return new Subscription()
+        {
+            public void close()
+            {
+                for (Subscription lSubscription : aSubscriptions)
+                {
+                    lSubscription.close();
+                }
+            }
+        };
+    }
+
+    @Override
+    public void unregister(Object aSubscriber)
+    {
+        for (MessageBus lStripe : stripes)
+        {
+            lStripe.unregister(aSubscriber);
+        }
+    }
+
+    @Override
+    public void unregisterAll(Collection<?> aSubscribers)
+    {
+        for (MessageBus lStripe : stripes)
+        {
+            lStripe.unregisterAll(aSubscribers);
+        }
+    }
+
+    @Override
+    public boolean hasSubscribersFor(Class<? extends EventObject> aEventClass)
+    {
+        return stripeFor(aEventClass).hasSubscribersFor(aEventClass);
+    }
+
+    @Override
+    boolean isInterested(Class<?> aEventClass)
+    {
+        return stripeFor(aEventClass).isInterested(aEventClass);
+    }
+
+    @Override
+    boolean receiveBroadcast(EventObject aEvent)
+    {
+        return stripeFor(aEvent.getClass()).receiveBroadcast(aEvent);
+    }
+
+    @Override
+    public void publish(EventObject aEvent)
+    {
+        stripeFor(aEvent.getClass()).publish(aEvent);
+    }
+
+    @Override
+    public void publishAsync(EventObject aEvent)
+    {
+        stripeFor(aEvent.getClass()).publishAsync(aEvent);
+    }
+
+    /**
+     * Publish a batch of events. The events are grouped by stripe, the events of a single class reach the handlers
+     * in the order of the collection.
+     *
+     * @param aEvents The events to be published on the bus.
+     */
+    @Override
+    public void publishAll(Collection<? extends EventObject> aEvents)
+    {
+        if (stripes.length == 1)
+        {
+            stripes[0].publishAll(aEvents);
+            return;
+        }
+
+        final List<List<EventObject>> lBatches = new ArrayList<List<EventObject>>(stripes.length);
+        for (int i = 0; i < stripes.length; i++)
+        {
+            lBatches.add(null);
+        }
+        for (EventObject lEvent : aEvents)
+        {
+            final int lIndex = spread(lEvent.getClass().hashCode()) & mask;
+            List<EventObject> lBatch = lBatches.get(lIndex);
+            if (lBatch == null)
+            {
+                lBatch = new ArrayList<EventObject>();
+                lBatches.set(lIndex, lBatch);
+            }
+            lBatch.add(lEvent);
+        }
+        for (int i = 0; i < stripes.length; i++)
+        {
+            final List<EventObject> lBatch = lBatches.get(i);
+            if (lBatch != null)
+            {
+                stripes[i].publishAll(lBatch);
+            }
+        }
+    }
+
+    /**
+     * The number of handlers, the handlers are registered in every stripe but they are counted once.
+     *
+     * @return The number of handler methods registered to this bus.
+     */
+    @Override
+    public int getNrSubscribers()
+    {
+        return stripes[0].getNrSubscribers();
+    }
+
+    /**
+     * Use the same executor for all stripes.
+     *
+     * @param aExecutor The executor, null if asynchronous delivery is not supported.
+     * @see #setExecutors(IntFunction)
+     */
+    @Override
+    public void setExecutor(Executor aExecutor)
+    {
+        for (MessageBus lStripe : stripes)
+        {
+            lStripe.setExecutor(aExecutor);
+        }
+    }
+
+    /**
+     * Give each stripe an executor of its own, for example a single thread executor per stripe.
+     * The asynchronous publications of different stripes then do not compete for the same queue.
+     *
+     * <pre> bus.setExecutors(stripe -&gt; Executors.newSingleThreadExecutor());</pre>
+     *
+     * @param aFactory Creates the executor for the stripe with the specified index.
+     */
+    public void setExecutors(IntFunction<? extends Executor> aFactory)
+    {
+        for (int i = 0; i < stripes.length; i++)
+        {
+            stripes[i].setExecutor(aFactory.apply(i));
+        }
+    }
+
+    @Override
+    public void setErrorHandler(DeliveryErrorHandler aErrorHandler)
+    {
+        for (MessageBus lStripe : stripes)
+        {
+            lStripe.setErrorHandler(aErrorHandler);
+        }
+    }
+
+    @Override
+    public void setAsynchronous(boolean aAsynchronous)
+    {
+        for (MessageBus lStripe : stripes)
+        {
+            lStripe.setAsynchronous(aAsynchronous);
+        }
+    }
+
+    @Override
+    public void setParallelDelivery(boolean aParallel)
+    {
+        for (MessageBus lStripe : stripes)
+        {
+            lStripe.setParallelDelivery(aParallel);
+        }
+    }
+
+    /**
+     * Switch the sticky mode of all stripes, each stripe remembers the events of its own event classes.
+     *
+     * @param aCapacity The maximum number of remembered events per stripe, 0 switches the sticky mode off.
+     */
+    @Override
+    public void setSticky(int aCapacity)
+    {
+        for (MessageBus lStripe : stripes)
+        {
+            lStripe.setSticky(aCapacity);
+        }
+    }
+
+    @Override
+    public void setCompiledDispatch(int aThreshold)
+    {
+        for (MessageBus lStripe : stripes)
+        {
+            lStripe.setCompiledDispatch(aThreshold);
+        }
+    }
+}
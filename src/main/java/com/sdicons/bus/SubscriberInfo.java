@@ -0,0 +1,167 @@
+/*
+ * Library "lib-messagebus".
+ * Copyright (c) 2011 Bruno Ranschaert, SDI-Consulting BVBA.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sdicons.bus;
+
+import com.sdicons.prop.PropertyVetoException;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.InvocationTargetException;
+import java.util.EventObject;
+
+/**
+ * Data structure to keep track of a bus listener. We keep the listener in a weak reference so that the bus
+ * does not prevent garbage collection. This is to prevent memory leaks. The reference is registered with the
+ * queue of the bus, so the bus learns about collected listeners without checking all of them.
+ * There is a single entry for all handlers of a listener, the descriptions of the handlers are shared by all
+ * instances of the listener class.
+ * A listener can be bound to a single source instance, the source is kept in a weak reference as well.
+ */
+class SubscriberInfo
+extends WeakReference<Object>
+{
+	// Weak reference to the source a listener is bound to. It is put on the queue of the bus when the source is collected,
+	// so the listener can be removed.
+	static class SourceRef
+	extends WeakReference<Object>
+	{
+		final SubscriberInfo info;
+
+		SourceRef(Object aSource, SubscriberInfo aInfo, ReferenceQueue<Object> aQueue)
+		{
+			super(aSource, aQueue);
+			this.info = aInfo;
+		}
+	}
+
+	// The descriptions of the handler methods, they are shared by all instances of the subscriber class.
+	final HandlerMethod[] handlers;
+	// The identity hash of the subscriber, it remains available after the subscriber is collected.
+	final int hash;
+	// The registration order of the first handler on the bus, the other handlers follow it.
+	final long order;
+	// The source the handlers are bound to, null if the handlers receive the events of all sources.
+	final SourceRef source;
+	// The identity hash of the source, 0 if the handlers are not bound.
+	final int sourceHash;
+	// The position in the registry, -1 if the subscriber is not registered. It is guarded by the bus lock.
+	int slot = -1;
+	// The next subscriber in the same bucket of the identity index of the registry. It is guarded by the bus lock.
+	SubscriberInfo nextInBucket;
+
+	SubscriberInfo(Object aSubscriber, Object aSource, HandlerMethod[] aHandlers, long aOrder, ReferenceQueue<Object> aQueue)
+	{
+		super(aSubscriber, aQueue);
+		this.handlers = aHandlers;
+		this.hash = System.identityHashCode(aSubscriber);
+		this.order = aOrder;
+		this.source = (aSource == null) ? null : new SourceRef(aSource, this, aQueue);
+		this.sourceHash = (aSource == null) ? 0 : System.identityHashCode(aSource);
+	}
+
+	// Entry without subscriber, the handler does not need a subscriber instance.
+	SubscriberInfo(HandlerMethod aHandler, long aOrder)
+	{
+		super(null);
+		this.handlers = new HandlerMethod[] {aHandler};
+		this.hash = System.identityHashCode(this);
+		this.order = aOrder;
+		this.source = null;
+		this.sourceHash = 0;
+	}
+
+	// Check if a handler of this subscriber is called before a handler of the other one.
+	boolean precedes(HandlerMethod aHandler, SubscriberInfo aOther, HandlerMethod aOtherHandler)
+	{
+		if (aHandler.priority != aOtherHandler.priority)
+		{
+			return aHandler.priority > aOtherHandler.priority;
+		}
+		return (this.order + aHandler.index) < (aOther.order + aOtherHandler.index);
+	}
+
+	// Check if a bound handler accepts an event of the specified class and property, coming from the specified source.
+	boolean acceptsBound(HandlerMethod aHandler, Object aSource, Class<?> aEventClass, String aProperty)
+	{
+		return (this.source.get() == aSource) && aHandler.accepts(aEventClass, aSource.getClass()) && aHandler.acceptsProperty(aProperty);
+	}
+
+	// Call one of the handlers with the specified event. The caller is responsible for verifying
+	// that the handler accepts the event, see the dispatch table in the bus.
+	boolean notify(HandlerMethod aHandler, EventObject aEvent)
+	{
+		final Object lSubscriber = get();
+		if (lSubscriber != null)
+		{
+			try
+			{
+				// Invoke the notification method.
+				// If the notification method gave us a boolean, the invoker will interpret this value,
+				// if we got 'true' this means that the event was handled completely, no other handlers will be invoked.
+				// If we got a 'false' this means that we have to continue invoking the other handlers.
+				return aHandler.invoker.invoke(lSubscriber, aEvent);
+			}
+			catch (Exception e)
+			{
+				throw failure(aHandler, lSubscriber, e);
+			}
+		}
+		return false;
+	}
+
+	// The exception for the publisher when a handler failed. A veto of the handler is passed on as it is.
+	RuntimeException failure(HandlerMethod aHandler, Object aSubscriber, Exception aError)
+	{
+		if ((aError instanceof InvocationTargetException) && (((InvocationTargetException) aError).getTargetException() instanceof PropertyVetoException))
+		{
+			return (PropertyVetoException) ((InvocationTargetException) aError).getTargetException();
+		}
+		final String lMsg = "Error while invoking notification method '%s' on an instance of class '%s'.";
+		return new RuntimeException(String.format(lMsg, aHandler.name, aSubscriber.getClass().getSimpleName()), aError);
+	}
+
+	// Check if the object that wants to receive notifications is
+	// garbage  collected, and is no longer available. A bound subscriber is garbage as well if its source was collected.
+	boolean isGarbage()
+	{
+		return (get() == null) || ((this.source != null) && (this.source.get() == null));
+	}
+
+	// The reference to the source is cleared together with the reference to the subscriber,
+	// neither of them will be put on the queue of the bus.
+	@Override
+	public void clear()
+	{
+		super.clear();
+		if (this.source != null)
+		{
+			this.source.clear();
+		}
+	}
+
+	boolean isForSpecifiedSubscriber(Object aSubscriber)
+	{
+		return get() == aSubscriber;
+	}
+}
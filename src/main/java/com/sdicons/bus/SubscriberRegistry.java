@@ -0,0 +1,234 @@
+/*
+ * Library "lib-messagebus".
+ * Copyright (c) 2011 Bruno Ranschaert, SDI-Consulting BVBA.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sdicons.bus;
+
+import java.util.Arrays;
+
+/**
+ * The subscribers registered on a bus, in registration order. There is one entry for all handlers of a subscriber.
+ * An entry can be removed in constant time, its slot is cleared and the array is compacted when more than half of the slots are empty.
+ * The entries are also indexed on the identity of their subscriber, so the entries of a single subscriber
+ * can be found without looking at the others. The index only holds the identity hash, not the subscriber itself.
+ * The registry is not thread safe, the bus guards it with its lock.
+ */
+class SubscriberRegistry
+{
+	private SubscriberInfo[] infos = new SubscriberInfo[16];
+	// The number of used slots, including the cleared ones.
+	private int end = 0;
+	// The number of registered entries.
+	private int size = 0;
+	// The number of handlers of the registered entries.
+	private int nrHandlers = 0;
+	// The identity index, the handlers in a bucket are chained. The number of buckets is a power of two.
+	private SubscriberInfo[] buckets = new SubscriberInfo[16];
+
+	void add(SubscriberInfo aInfo)
+	{
+		if (this.end == this.infos.length)
+		{
+			if (this.size < (this.end >> 1))
+			{
+				compact();
+			}
+			else
+			{
+				this.infos = Arrays.copyOf(this.infos, this.infos.length << 1);
+			}
+		}
+		aInfo.slot = this.end;
+		this.infos[this.end++] = aInfo;
+		this.size++;
+		this.nrHandlers += aInfo.handlers.length;
+
+		if (this.size > this.buckets.length)
+		{
+			rehash(this.buckets.length << 1);
+		}
+		final int lBucket = bucket(aInfo.hash, this.buckets.length);
+		aInfo.nextInBucket = this.buckets[lBucket];
+		this.buckets[lBucket] = aInfo;
+	}
+
+	// Remove an entry, nothing happens if it was removed before.
+	boolean remove(SubscriberInfo aInfo)
+	{
+		final int lSlot = aInfo.slot;
+		if ((lSlot < 0) || (this.infos[lSlot] != aInfo))
+		{
+			return false;
+		}
+		this.infos[lSlot] = null;
+		aInfo.slot = -1;
+		this.size--;
+		this.nrHandlers -= aInfo.handlers.length;
+		unlink(aInfo);
+		if ((this.size < (this.end >> 2)) && (this.end > 16))
+		{
+			compact();
+		}
+		return true;
+	}
+
+	// Remove the entries of a subscriber, only the bucket of the subscriber in the identity index is visited.
+	// The references are cleared so that they do not end up on the reference queue of the bus. The result is the number of removed entries.
+	int removeSubscriber(Object aSubscriber)
+	{
+		int lRemoved = 0;
+		SubscriberInfo lInfo = this.buckets[bucket(System.identityHashCode(aSubscriber), this.buckets.length)];
+		while (lInfo != null)
+		{
+			final SubscriberInfo lNext = lInfo.nextInBucket;
+			if (lInfo.isForSpecifiedSubscriber(aSubscriber))
+			{
+				if (remove(lInfo))
+				{
+					lRemoved++;
+				}
+				lInfo.clear();
+			}
+			lInfo = lNext;
+		}
+		return lRemoved;
+	}
+
+	// Remove the entries of collected subscribers that were not reported by the reference queue yet.
+	// The array is compacted afterwards, a compaction halfway would move entries that were not checked yet.
+	boolean removeGarbage()
+	{
+		boolean lRemoved = false;
+		for (int i = 0; i < this.end; i++)
+		{
+			final SubscriberInfo lInfo = this.infos[i];
+			if ((lInfo != null) && lInfo.isGarbage())
+			{
+				this.infos[i] = null;
+				lInfo.slot = -1;
+				this.size--;
+				this.nrHandlers -= lInfo.handlers.length;
+				unlink(lInfo);
+				lRemoved = true;
+			}
+		}
+		if (lRemoved)
+		{
+			compact();
+		}
+		return lRemoved;
+	}
+
+	int size()
+	{
+		return this.size;
+	}
+
+	// The number of handlers, a subscriber with several handler methods counts several times.
+	int nrHandlers()
+	{
+		return this.nrHandlers;
+	}
+
+	// The registered entries in registration order.
+	SubscriberInfo[] toArray()
+	{
+		final SubscriberInfo[] lResult = new SubscriberInfo[this.size];
+		int lPos = 0;
+		for (int i = 0; i < this.end; i++)
+		{
+			if (this.infos[i] != null)
+			{
+				lResult[lPos++] = this.infos[i];
+			}
+		}
+		return lResult;
+	}
+
+	// Remove an entry from its bucket in the identity index.
+	private void unlink(SubscriberInfo aInfo)
+	{
+		final int lBucket = bucket(aInfo.hash, this.buckets.length);
+		SubscriberInfo lPrev = null;
+		SubscriberInfo lInfo = this.buckets[lBucket];
+		while (lInfo != null)
+		{
+			if (lInfo == aInfo)
+			{
+				if (lPrev == null)
+				{
+					this.buckets[lBucket] = lInfo.nextInBucket;
+				}
+				else
+				{
+					lPrev.nextInBucket = lInfo.nextInBucket;
+				}
+				lInfo.nextInBucket = null;
+				return;
+			}
+			lPrev = lInfo;
+			lInfo = lInfo.nextInBucket;
+		}
+	}
+
+	// Distribute the entries over a new number of buckets.
+	private void rehash(int aNrBuckets)
+	{
+		final SubscriberInfo[] lBuckets = new SubscriberInfo[aNrBuckets];
+		for (SubscriberInfo lHead : this.buckets)
+		{
+			SubscriberInfo lInfo = lHead;
+			while (lInfo != null)
+			{
+				final SubscriberInfo lNext = lInfo.nextInBucket;
+				final int lBucket = bucket(lInfo.hash, aNrBuckets);
+				lInfo.nextInBucket = lBuckets[lBucket];
+				lBuckets[lBucket] = lInfo;
+				lInfo = lNext;
+			}
+		}
+		this.buckets = lBuckets;
+	}
+
+	// The identity hashes are spread so that the low bits, used to select the bucket, depend on all bits.
+	private static int bucket(int aHash, int aNrBuckets)
+	{
+		return (aHash ^ (aHash >>> 16)) & (aNrBuckets - 1);
+	}
+
+	// Move the entries to the front of the array, the order is preserved.
+	private void compact()
+	{
+		int lPos = 0;
+		for (int i = 0; i < this.end; i++)
+		{
+			final SubscriberInfo lInfo = this.infos[i];
+			if (lInfo != null)
+			{
+				lInfo.slot = lPos;
+				this.infos[lPos++] = lInfo;
+			}
+		}
+		Arrays.fill(this.infos, lPos, this.end, null);
+		this.end = lPos;
+	}
+}
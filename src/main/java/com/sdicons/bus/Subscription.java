@@ -0,0 +1,44 @@
+/*
+ * Library "lib-messagebus".
+ * Copyright (c) 2011 Bruno Ranschaert, SDI-Consulting BVBA.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sdicons.bus;
+
+/**
+ * Handle of a functional subscription on a {@link MessageBus}. The bus holds the handler function until the subscription is closed,
+ * unlike the {@link MessageBus#register(Object) registered} beans it is not released by the garbage collector.
+ *
+ * <pre> Subscription subscription = bus.subscribe(PropertyChangeEvent.class, event -&gt; refresh());
+ * ...
+ * subscription.close();</pre>
+ *
+ * @see MessageBus#subscribe(Class, java.util.function.Consumer)
+ * @see MessageBus#intercept(Class, java.util.function.Predicate)
+ */
+public interface Subscription
+extends AutoCloseable
+{
+    /**
+     * Stop the delivery of events to the handler. Closing a subscription more than once has no effect.
+     */
+    void close();
+}
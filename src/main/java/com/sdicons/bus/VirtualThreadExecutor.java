@@ -0,0 +1,155 @@
+/*
+ * Library "lib-messagebus".
+ * Copyright (c) 2011 Bruno Ranschaert, SDI-Consulting BVBA.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sdicons.bus;
+
+import java.lang.reflect.Method;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * <p>Executor that runs every task on a thread of its own. On a Java runtime that supports virtual threads each task gets a new virtual thread,
+ * this is the right choice for handlers that block on I/O. On older runtimes the executor starts a new daemon platform thread for each task.
+ *
+ * <p>The number of tasks that run at the same time is limited, when the limit is reached the new tasks wait in a queue and they are started
+ * in submission order as the running tasks end. {@link #execute(Runnable)} never blocks, so a handler running on the executor can publish
+ * on an asynchronous bus that uses the same executor. The queue is not bounded, publishers that are faster than the handlers make it grow.
+ *
+ * <pre> bus.setExecutor(new VirtualThreadExecutor(256));
+ * bus.setParallelDelivery(true);
+ * bus.setAsynchronous(true);</pre>
+ *
+ * @see MessageBus#setParallelDelivery(boolean)
+ */
+public class VirtualThreadExecutor
+implements Executor
+{
+    // Factory for virtual threads, null if the runtime does not support them.
+    private static final ThreadFactory VIRTUAL_THREADS = createVirtualThreadFactory();
+
+    private final Semaphore permits;
+    // The tasks that wait for a permit.
+    private final Queue<Runnable> waiting = new ConcurrentLinkedQueue<Runnable>();
+
+    /**
+     * Create an executor.
+     *
+     * @param aMaxConcurrency The maximum number of tasks that can run at the same time.
+     */
+    public VirtualThreadExecutor(int aMaxConcurrency)
+    {
+        if (aMaxConcurrency <= 0) throw new IllegalArgumentException("The concurrency of the executor should be at least 1.");
+        permits = new Semaphore(aMaxConcurrency);
+    }
+
+    /**
+     * Check if the tasks run on virtual threads.
+     *
+     * @return True if the runtime supports virtual threads.
+     */
+    public boolean isVirtual()
+    {
+        return VIRTUAL_THREADS != null;
+    }
+
+    public void execute(Runnable aTask)
+    {
+        waiting.add(aTask);
+        startWaiting();
+    }
+
+    // Start the waiting tasks as long as there are permits. A task that ends releases its permit before it looks at the queue,
+    // and a new task is queued before the permits are tried, so a queued task is always picked up by one of them.
+    private void startWaiting()
+    {
+        while (!waiting.isEmpty() && permits.tryAcquire())
+        {
+            final Runnable lWaiting = waiting.poll();
+            if (lWaiting == null)
+            {
+                // Another thread took the task.
+                permits.release();
+                continue;
+            }
+            start(lWaiting);
+        }
+    }
+
+    // Run the task on a new thread, the thread holds a permit.
+    private void start(final Runnable aTask)
+    {
+        final Runnable lTask = new Runnable()
+        {
+            public void run()
+            {
+                try
+                {
+                    aTask.run();
+                }
+                finally
+                {
+                    permits.release();
+                    startWaiting();
+                }
+            }
+        };
+
+        try
+        {
+            if (VIRTUAL_THREADS != null)
+            {
+                VIRTUAL_THREADS.newThread(lTask).start();
+            }
+            else
+            {
+                final Thread lThread = new Thread(lTask, "messagebus-delivery");
+                lThread.setDaemon(true);
+                lThread.start();
+            }
+        }
+        catch (RuntimeException | Error e)
+        {
+            // The thread could not be started.
+            permits.release();
+            throw e;
+        }
+    }
+
+    // The virtual thread API is looked up at runtime, the library is compiled for older Java versions.
+    private static ThreadFactory createVirtualThreadFactory()
+    {
+        try
+        {
+            final Object lBuilder = Thread.class.getMethod("ofVirtual").invoke(null);
+            final Method lFactory = Class.forName("java.lang.Thread$Builder").getMethod("factory");
+            return (ThreadFactory) lFactory.invoke(lBuilder);
+        }
+        catch (Exception e)
+        {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,356 @@
+/*
+ * Library "lib-messagebus".
+ * Copyright (c) 2011 Bruno Ranschaert, SDI-Consulting BVBA.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sdicons.bus.processor;
+
+import com.sdicons.bus.Notify;
+import com.sdicons.bus.NotifyDispatcher;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EventObject;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * <p>Annotation processor that generates a {@link NotifyDispatcher} for each class with {@link Notify} methods, the inherited
+ * handlers included. The dispatcher describes the handlers and calls them directly, the bus uses it instead of scanning the
+ * class with reflection. The processor is registered as a service, it runs when the library is on the compile class path.
+ *
+ * <p>Some classes keep using reflection: abstract classes and interfaces, classes that are not accessible from their own package,
+ * like private nested classes, and classes with handlers that refer to such types. A handler with a wrong signature gives
+ * a warning, the bus rejects it at registration time. The warning is left out for methods and classes annotated with
+ * {@code @SuppressWarnings("messagebus")} or {@code @SuppressWarnings("all")}.
+ *
+ * <p>The processor also writes a GraalVM native-image configuration, so the dispatchers can be found in a native image.
+ */
+@SupportedAnnotationTypes("com.sdicons.bus.Notify")
+public class NotifyProcessor
+extends AbstractProcessor
+{
+    // The location of the native-image configuration in the class output.
+    private static final String NATIVE_IMAGE_CONFIG = "META-INF/native-image/com.sdicons/messagebus/reflect-config.json";
+
+    // The names of the dispatchers that were generated, over all rounds.
+    private final Set<String> dispatchers = new TreeSet<String>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion()
+    {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> aAnnotations, RoundEnvironment aRound)
+    {
+        if (aRound.processingOver())
+        {
+            writeNativeImageConfig();
+            return false;
+        }
+        // Subclasses inherit the handlers, all the classes of the round are checked.
+        for (TypeElement lType : ElementFilter.typesIn(aRound.getRootElements()))
+        {
+            processType(lType);
+        }
+        // The annotation belongs to the library, claiming it keeps -Xlint:processing quiet.
+        return true;
+    }
+
+    // Generate the dispatcher of a type and of its nested types.
+    private void processType(TypeElement aType)
+    {
+        if ((aType.getKind() == ElementKind.CLASS) && !aType.getModifiers().contains(Modifier.ABSTRACT))
+        {
+            final List<ExecutableElement> lHandlers = findHandlers(aType);
+            if ((lHandlers != null) && !lHandlers.isEmpty() && isAccessible(aType, aType))
+            {
+                generate(aType, lHandlers);
+            }
+        }
+        for (TypeElement lNested : ElementFilter.typesIn(aType.getEnclosedElements()))
+        {
+            processType(lNested);
+        }
+    }
+
+    // The public annotated methods of the type, the inherited ones included, null if the type has to use reflection.
+    private List<ExecutableElement> findHandlers(TypeElement aType)
+    {
+        final Types lTypes = processingEnv.getTypeUtils();
+        final TypeMirror lEventType = processingEnv.getElementUtils().getTypeElement("java.util.EventObject").asType();
+        final List<ExecutableElement> lMethods = ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(aType));
+        final List<ExecutableElement> lHandlers = new ArrayList<ExecutableElement>();
+        boolean lValid = true;
+        for (ExecutableElement lMethod : lMethods)
+        {
+            // The bus only looks at the public methods, the annotation of an overridden method does not count.
+            if ((notifyMirror(lMethod) == null) || !lMethod.getModifiers().contains(Modifier.PUBLIC) || isOverridden(lMethod, lMethods, aType))
+            {
+                continue;
+            }
+
+            final List<? extends Element> lParams = lMethod.getParameters();
+            if ((lParams.size() != 1) || !lTypes.isAssignable(lParams.get(0).asType(), lEventType))
+            {
+                // Only reported once, on the class that declares the method.
+                if (lMethod.getEnclosingElement().equals(aType) && !isSuppressed(lMethod))
+                {
+                    final String lMsg = "The @Notify method '%s' should have a single EventObject (or subclass) parameter, the bus will reject the class.";
+                    processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, String.format(lMsg, lMethod.getSimpleName()), lMethod);
+                }
+                lValid = false;
+            }
+            else if (!isAccessible(lParams.get(0).asType(), aType) || !isAccessible(sourceType(lMethod), aType))
+            {
+                lValid = false;
+            }
+            else
+            {
+                lHandlers.add(lMethod);
+            }
+        }
+        return lValid ? lHandlers : null;
+    }
+
+    // Are the warnings of the processor suppressed on the element or on one of the elements that enclose it?
+    private static boolean isSuppressed(Element aElement)
+    {
+        for (Element lElement = aElement; lElement != null; lElement = lElement.getEnclosingElement())
+        {
+            final SuppressWarnings lSuppress = lElement.getAnnotation(SuppressWarnings.class);
+            if (lSuppress != null)
+            {
+                final List<String> lKeys = Arrays.asList(lSuppress.value());
+                if (lKeys.contains("messagebus") || lKeys.contains("all"))
+                {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean isOverridden(ExecutableElement aMethod, List<ExecutableElement> aMethods, TypeElement aType)
+    {
+        for (ExecutableElement lOther : aMethods)
+        {
+            if ((lOther != aMethod) && processingEnv.getElementUtils().overrides(lOther, aMethod, aType))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Can the dispatcher of the type, in the same package, refer to the specified type?
+    private boolean isAccessible(TypeMirror aType, TypeElement aDispatched)
+    {
+        final TypeMirror lErasure = processingEnv.getTypeUtils().erasure(aType);
+        return (lErasure.getKind() == TypeKind.DECLARED) && isAccessible((TypeElement) ((DeclaredType) lErasure).asElement(), aDispatched);
+    }
+
+    private boolean isAccessible(TypeElement aType, TypeElement aDispatched)
+    {
+        final Elements lElements = processingEnv.getElementUtils();
+        final boolean lSamePackage = lElements.getPackageOf(aType).equals(lElements.getPackageOf(aDispatched));
+        for (Element lElement = aType; lElement instanceof TypeElement; lElement = lElement.getEnclosingElement())
+        {
+            final Set<Modifier> lModifiers = lElement.getModifiers();
+            if (lModifiers.contains(Modifier.PRIVATE) || (!lSamePackage && !lModifiers.contains(Modifier.PUBLIC)))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static AnnotationMirror notifyMirror(ExecutableElement aMethod)
+    {
+        for (AnnotationMirror lMirror : aMethod.getAnnotationMirrors())
+        {
+            if (((TypeElement) lMirror.getAnnotationType().asElement()).getQualifiedName().contentEquals(Notify.class.getName()))
+            {
+                return lMirror;
+            }
+        }
+        return null;
+    }
+
+    // The value of an attribute of the annotation, the default value if it was not specified.
+    private Object attribute(ExecutableElement aMethod, String aName)
+    {
+        final Map<? extends ExecutableElement, ? extends AnnotationValue> lValues = processingEnv.getElementUtils().getElementValuesWithDefaults(notifyMirror(aMethod));
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> lEntry : lValues.entrySet())
+        {
+            if (lEntry.getKey().getSimpleName().contentEquals(aName))
+            {
+                return lEntry.getValue().getValue();
+            }
+        }
+        throw new IllegalStateException("Unknown attribute of @Notify: " + aName);
+    }
+
+    private TypeMirror sourceType(ExecutableElement aMethod)
+    {
+        return (TypeMirror) attribute(aMethod, "sourceType");
+    }
+
+    // Write the source of the dispatcher.
+    private void generate(TypeElement aType, List<ExecutableElement> aHandlers)
+    {
+        final Elements lElements = processingEnv.getElementUtils();
+        final Types lTypes = processingEnv.getTypeUtils();
+        final PackageElement lPackage = lElements.getPackageOf(aType);
+        final String lBinaryName = lElements.getBinaryName(aType).toString();
+        final String lDispatcher = lBinaryName + NotifyDispatcher.SUFFIX;
+        final String lSimpleName = lDispatcher.substring(lDispatcher.lastIndexOf('.') + 1);
+        final String lTypeName = lTypes.erasure(aType.asType()).toString();
+        if (!this.dispatchers.add(lDispatcher))
+        {
+            return;
+        }
+
+        final Filer lFiler = processingEnv.getFiler();
+        try (Writer lWriter = lFiler.createSourceFile(lDispatcher, aType).openWriter())
+        {
+            final PrintWriter lOut = new PrintWriter(lWriter);
+            if (!lPackage.isUnnamed())
+            {
+                lOut.println("package " + lPackage.getQualifiedName() + ";");
+                lOut.println();
+            }
+            lOut.println("/**");
+            lOut.println(" * Dispatcher of {@link " + lTypeName + "}, generated by " + NotifyProcessor.class.getName() + ", do not edit.");
+            lOut.println(" */");
+            // The subscriber is cast to the erasure of its class, the handlers of a generic class are called on the raw type.
+            lOut.println("@SuppressWarnings({\"rawtypes\", \"unchecked\"})");
+            lOut.println("public final class " + lSimpleName);
+            lOut.println("extends " + NotifyDispatcher.class.getName());
+            lOut.println("{");
+            lOut.println("    public " + lSimpleName + "()");
+            lOut.println("    {");
+            for (ExecutableElement lMethod : aHandlers)
+            {
+                final String lEventName = lTypes.erasure(lMethod.getParameters().get(0).asType()).toString();
+                // A cast to EventObject would be redundant, the compiler warns about it.
+                final String lEvent = EventObject.class.getName().equals(lEventName) ? "aEvent" : "(" + lEventName + ") aEvent";
+                final String lCall = (lMethod.getModifiers().contains(Modifier.STATIC) ? lTypeName : "((" + lTypeName + ") aSubscriber)") +
+                    "." + lMethod.getSimpleName() + "(" + lEvent + ")";
+                final TypeMirror lReturn = lMethod.getReturnType();
+
+                lOut.println("        handler(" + lElements.getConstantExpression(lMethod.getSimpleName().toString()) + ", " +
+                    lEventName + ".class, " +
+                    lTypes.erasure(sourceType(lMethod)) + ".class, " +
+                    attribute(lMethod, "allowNullSource") + ", " +
+                    lElements.getConstantExpression(attribute(lMethod, "property")) + ", " +
+                    attribute(lMethod, "priority") + ", new com.sdicons.bus.HandlerInvoker()");
+                lOut.println("        {");
+                lOut.println("            public boolean invoke(Object aSubscriber, java.util.EventObject aEvent)");
+                lOut.println("            throws java.lang.reflect.InvocationTargetException");
+                lOut.println("            {");
+                lOut.println("                try");
+                lOut.println("                {");
+                if (lReturn.getKind() == TypeKind.BOOLEAN)
+                {
+                    lOut.println("                    return " + lCall + ";");
+                }
+                else if (lReturn.getKind().isPrimitive() || (lReturn.getKind() == TypeKind.VOID))
+                {
+                    lOut.println("                    " + lCall + ";");
+                    lOut.println("                    return false;");
+                }
+                else
+                {
+                    lOut.println("                    return Boolean.TRUE.equals(" + lCall + ");");
+                }
+                lOut.println("                }");
+                lOut.println("                catch (Throwable e)");
+                lOut.println("                {");
+                lOut.println("                    throw new java.lang.reflect.InvocationTargetException(e);");
+                lOut.println("                }");
+                lOut.println("            }");
+                lOut.println("        });");
+            }
+            lOut.println("    }");
+            lOut.println("}");
+            lOut.flush();
+        }
+        catch (IOException e)
+        {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Cannot write the dispatcher " + lDispatcher + ": " + e.getMessage(), aType);
+        }
+    }
+
+    // The dispatchers are created by name, a native image needs to know them in advance.
+    private void writeNativeImageConfig()
+    {
+        if (this.dispatchers.isEmpty())
+        {
+            return;
+        }
+        try (Writer lWriter = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", NATIVE_IMAGE_CONFIG).openWriter())
+        {
+            final PrintWriter lOut = new PrintWriter(lWriter);
+            lOut.println("[");
+            int lCount = 0;
+            for (String lDispatcher : this.dispatchers)
+            {
+                lOut.print("  {\"name\": \"" + lDispatcher + "\", \"methods\": [{\"name\": \"<init>\", \"parameterTypes\": []}]}");
+                lOut.println((++lCount < this.dispatchers.size()) ? "," : "");
+            }
+            lOut.println("]");
+            lOut.flush();
+        }
+        catch (IOException e)
+        {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, "Cannot write the native-image configuration: " + e.getMessage());
+        }
+    }
+}
@@ -66,7 +66,7 @@ implements Serializable
         if(((aValue == null) && (aValue != lOldValue)) ||
            ((aValue != null) && (!aValue.equals(lOldValue))))
         {
-            if(constrained && (bus != null))
+            if(constrained && (bus != null) && bus.hasSubscribersFor(VetoablePropertyChangeEvent.class))
             {
                 final  VetoablePropertyChangeEvent lEvent = new VetoablePropertyChangeEvent(source, aKey.toString(), lOldValue, aValue);
                 bus.publish(lEvent);
@@ -75,7 +75,7 @@ implements Serializable
             if(aValue == null) values.remove(aKey);
             else values.put(aKey, aValue);
 
-            if(bus != null)
+            if((bus != null) && bus.hasSubscribersFor(PropertyChangeEvent.class))
             {
                 PropertyChangeEvent lEvent = new PropertyChangeEvent(source, aKey.toString(), lOldValue, aValue);
                 bus.publish(lEvent);
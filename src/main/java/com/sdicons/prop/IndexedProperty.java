@@ -75,7 +75,7 @@ implements Serializable
 		// If nothing changes nobody should be asked or notified about the change.
 		if (((aValue == null) && (aValue != lOldValue)) || ((aValue != null) && (!aValue.equals(lOldValue))))
 		{
-			if (this.constrained && (this.bus != null))
+			if (this.constrained && (this.bus != null) && this.bus.hasSubscribersFor(VetoableIndexedPropertyChangeEvent.class))
 			{
 				final VetoableIndexedPropertyChangeEvent lEvent = new VetoableIndexedPropertyChangeEvent(this.source, this.name, lOldValue, aValue, aIndex);
 				this.bus.publish(lEvent);
@@ -90,7 +90,7 @@ implements Serializable
 				this.values.put(aIndex, aValue);
 			}
 
-			if (this.bus != null)
+			if ((this.bus != null) && this.bus.hasSubscribersFor(IndexedPropertyChangeEvent.class))
 			{
 				PropertyChangeEvent lEvent = new IndexedPropertyChangeEvent(this.source, this.name, lOldValue, aValue, aIndex);
 				this.bus.publish(lEvent);
@@ -28,6 +28,7 @@ import com.sdicons.bus.MessageBus;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 
@@ -73,7 +74,7 @@ implements Iterable<E>, Serializable
         {
             final int lIndex = values.indexOf(lastSeen);
 
-            if (ListProperty.this.constrained && (ListProperty.this.bus != null))
+            if (ListProperty.this.constrained && (ListProperty.this.bus != null) && ListProperty.this.bus.hasSubscribersFor(VetoableListPropertyChangeEvent.class))
             {
                 final VetoableListPropertyChangeEvent lEvent = new VetoableListPropertyChangeEvent(ListProperty.this.source, ListProperty.this.name, lastSeen, lIndex, ChangeType.DELETE);
                 ListProperty.this.bus.publish(lEvent);
@@ -81,7 +82,7 @@ implements Iterable<E>, Serializable
 
             target.remove();
 
-            if (ListProperty.this.bus != null)
+            if ((ListProperty.this.bus != null) && ListProperty.this.bus.hasSubscribersFor(ListPropertyChangeEvent.class))
             {
                 ListPropertyChangeEvent lEvent = new ListPropertyChangeEvent(ListProperty.this.source, ListProperty.this.name, lastSeen, lIndex, ChangeType.DELETE);
                 ListProperty.this.bus.publish(lEvent);
@@ -113,26 +114,32 @@ implements Iterable<E>, Serializable
 	}
 	
 	public void addValue(int aIndex, E aValue)
+	{
+		insertValue(aIndex, aValue);
+		
+		if ((this.bus != null) && this.bus.hasSubscribersFor(ListPropertyChangeEvent.class))
+		{
+			ListPropertyChangeEvent lEvent = new ListPropertyChangeEvent(this.source, this.name, aValue, aIndex, ChangeType.INSERT);
+			this.bus.publish(lEvent);
+		}		
+	}	
+	
+	// Insert a value if the change is not vetoed, the caller has to publish the change event.
+	private void insertValue(int aIndex, E aValue)
 	{
 		if (aIndex < 0 || aIndex > values.size())
 		{
 			throw new ArrayIndexOutOfBoundsException();
 		}
 		
-		if (this.constrained && (this.bus != null))
+		if (this.constrained && (this.bus != null) && this.bus.hasSubscribersFor(VetoableListPropertyChangeEvent.class))
 		{
 			final VetoableListPropertyChangeEvent lEvent = new VetoableListPropertyChangeEvent(this.source, this.name, aValue, aIndex, ChangeType.INSERT);
 			this.bus.publish(lEvent);
 		}
 		
 		values.add(aIndex, aValue);
-		
-		if (this.bus != null)
-		{
-			ListPropertyChangeEvent lEvent = new ListPropertyChangeEvent(this.source, this.name, aValue, aIndex, ChangeType.INSERT);
-			this.bus.publish(lEvent);
-		}		
-	}	
+	}
 	
 	public void addValue(E aValue)
 	{
@@ -141,17 +148,33 @@ implements Iterable<E>, Serializable
 	
 	public void addAllValues(Collection<? extends E> aColl) 
 	{
-		for(E lVal: aColl)
-		{
-			addValue(lVal);
-		}
+		this.addAllValues(values.size(), aColl);
 	}
 	
 	public void addAllValues(int aIndex, Collection<? extends E> aColl) 
 	{
-		for(E lVal: aColl)
+		// Each insert can be vetoed separately, the change events are published as a batch.
+		final boolean lNotify = (this.bus != null) && this.bus.hasSubscribersFor(ListPropertyChangeEvent.class);
+		final List<ListPropertyChangeEvent> lEvents = lNotify ? new ArrayList<ListPropertyChangeEvent>(aColl.size()) : Collections.<ListPropertyChangeEvent>emptyList();
+		try
+		{
+			for(E lVal: aColl)
+			{
+				insertValue(aIndex, lVal);
+				if (lNotify)
+				{
+					lEvents.add(new ListPropertyChangeEvent(this.source, this.name, lVal, aIndex, ChangeType.INSERT));
+				}
+				aIndex++;
+			}
+		}
+		finally
 		{
-			addValue(aIndex++, lVal);
+			// Also announce the values that were added before a veto.
+			if (!lEvents.isEmpty())
+			{
+				this.bus.publishAll(lEvents);
+			}
 		}
 	}
 	
@@ -164,7 +187,7 @@ implements Iterable<E>, Serializable
 		
 		final Object lValue = values.get(aIndex);
 		
-		if (this.constrained && (this.bus != null))
+		if (this.constrained && (this.bus != null) && this.bus.hasSubscribersFor(VetoableListPropertyChangeEvent.class))
 		{
 			final VetoableListPropertyChangeEvent lEvent = new VetoableListPropertyChangeEvent(this.source, this.name, lValue, aIndex, ChangeType.DELETE);
 			this.bus.publish(lEvent);
@@ -172,7 +195,7 @@ implements Iterable<E>, Serializable
 		
 		E lVal = values.remove(aIndex);
 		
-		if (this.bus != null)
+		if ((this.bus != null) && this.bus.hasSubscribersFor(ListPropertyChangeEvent.class))
 		{
 			ListPropertyChangeEvent lEvent = new ListPropertyChangeEvent(this.source, this.name, lValue, aIndex, ChangeType.DELETE);
 			this.bus.publish(lEvent);
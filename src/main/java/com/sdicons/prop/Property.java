@@ -76,7 +76,7 @@ implements Serializable
         if(((aValue == null) && (aValue != value)) ||
            ((aValue != null) && (!aValue.equals(value))))
         {
-            if(constrained && (bus != null))
+            if(constrained && (bus != null) && bus.hasSubscribersFor(VetoablePropertyChangeEvent.class))
             {
                 final VetoablePropertyChangeEvent lEvent = new VetoablePropertyChangeEvent(source, name, value, aValue);
                 bus.publish(lEvent);
@@ -85,7 +85,7 @@ implements Serializable
             E lOldValue = value;
             value = aValue;
 
-            if(bus != null)
+            if((bus != null) && bus.hasSubscribersFor(PropertyChangeEvent.class))
             {
                 PropertyChangeEvent lEvent = new PropertyChangeEvent(source, name, lOldValue, value);
                 bus.publish(lEvent);
@@ -68,7 +68,7 @@ implements Iterable<E>, Serializable
 
 		public void remove()
 		{
-			if (SetProperty.this.constrained && (SetProperty.this.bus != null))
+			if (SetProperty.this.constrained && (SetProperty.this.bus != null) && SetProperty.this.bus.hasSubscribersFor(VetoableSetPropertyChangeEvent.class))
 			{
 				final VetoableSetPropertyChangeEvent lEvent = new VetoableSetPropertyChangeEvent(SetProperty.this.source,SetProperty.this.name, lastSeen, ChangeType.DELETE);
 				SetProperty.this.bus.publish(lEvent);
@@ -76,7 +76,7 @@ implements Iterable<E>, Serializable
 
 			target.remove();
 
-			if (SetProperty.this.bus != null)
+			if ((SetProperty.this.bus != null) && SetProperty.this.bus.hasSubscribersFor(SetPropertyChangeEvent.class))
 			{
 				SetPropertyChangeEvent lEvent = new SetPropertyChangeEvent(SetProperty.this.source, SetProperty.this.name, lastSeen,ChangeType.DELETE);
 				SetProperty.this.bus.publish(lEvent);
@@ -110,7 +110,7 @@ implements Iterable<E>, Serializable
 	public boolean addValue(E aValue)
 	{
       boolean lResult = false;
-		if (this.constrained && (this.bus != null))
+		if (this.constrained && (this.bus != null) && this.bus.hasSubscribersFor(VetoableSetPropertyChangeEvent.class))
 		{
 			final VetoableSetPropertyChangeEvent lEvent = new VetoableSetPropertyChangeEvent(this.source, this.name, aValue, ChangeType.INSERT);
 			this.bus.publish(lEvent);
@@ -118,7 +118,7 @@ implements Iterable<E>, Serializable
 		
 		lResult = values.add(aValue);
 		
-		if (this.bus != null && lResult)
+		if (lResult && (this.bus != null) && this.bus.hasSubscribersFor(SetPropertyChangeEvent.class))
 		{
 			SetPropertyChangeEvent lEvent = new SetPropertyChangeEvent(this.source, this.name, aValue, ChangeType.INSERT);
 			this.bus.publish(lEvent);
@@ -140,7 +140,7 @@ implements Iterable<E>, Serializable
 	{
 		boolean lResult = false;
 
-		if (this.constrained && (this.bus != null))
+		if (this.constrained && (this.bus != null) && this.bus.hasSubscribersFor(VetoableSetPropertyChangeEvent.class))
 		{
 			final VetoableSetPropertyChangeEvent lEvent = new VetoableSetPropertyChangeEvent(this.source, this.name, aValue, ChangeType.DELETE);
 			this.bus.publish(lEvent);
@@ -148,7 +148,7 @@ implements Iterable<E>, Serializable
 		
 		lResult = values.remove(aValue);
 		
-		if (this.bus != null && lResult)
+		if (lResult && (this.bus != null) && this.bus.hasSubscribersFor(SetPropertyChangeEvent.class))
 		{
 			SetPropertyChangeEvent lEvent = new SetPropertyChangeEvent(this.source, this.name, aValue, ChangeType.DELETE);
 			this.bus.publish(lEvent);
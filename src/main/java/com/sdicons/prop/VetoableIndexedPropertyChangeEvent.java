@@ -31,6 +31,7 @@ import java.util.EventObject;
  */
 public class VetoableIndexedPropertyChangeEvent
 extends EventObject
+implements VetoableEvent
 {
     private String name;
     private Object oldValue;
@@ -29,6 +29,7 @@ package com.sdicons.prop;
  */
 public class VetoableListPropertyChangeEvent
 extends AbstractListPropertyChangeEvent
+implements VetoableEvent
 {
 	public VetoableListPropertyChangeEvent(Object aSource, String name, Object value, int index, ChangeType changeType)
 	{
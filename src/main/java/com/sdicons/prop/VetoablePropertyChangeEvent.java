@@ -32,7 +32,7 @@ import java.util.EventObject;
  * property implementations will use this. The consumer can call PropertyVetoException to veto the change.
  *
  */
-public class VetoablePropertyChangeEvent extends EventObject
+public class VetoablePropertyChangeEvent extends EventObject implements VetoableEvent
 {
 	private String name;
 	private Object oldValue;
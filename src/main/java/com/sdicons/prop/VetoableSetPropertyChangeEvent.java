@@ -29,6 +29,7 @@ package com.sdicons.prop;
  */
 public class VetoableSetPropertyChangeEvent
 extends AbstractCollectionPropertyChangeEvent
+implements VetoableEvent
 {
     public VetoableSetPropertyChangeEvent(Object source, String name, Object value, ChangeType changeType)
     {
@@ -0,0 +1,173 @@
+/*
+ * Library "lib-messagebus".
+ * Copyright (c) 2011 Bruno Ranschaert, SDI-Consulting BVBA.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sdicons.bus;
+
+import com.sdicons.prop.Property;
+import com.sdicons.prop.SetPropertyChangeEvent;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.beans.IndexedPropertyChangeEvent;
+import java.beans.PropertyChangeEvent;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.EventObject;
+import java.util.List;
+
+public class AllocationTest
+{
+    private static final int NR_WARMUP = 50000;
+    private static final int NR_EVENTS = 100000;
+
+    public static class Listener
+    {
+        public int counter = 0;
+
+        @Notify
+        public void callback(EventObject aEvent)
+        {
+            counter++;
+        }
+
+        @Notify(property = "price")
+        public boolean priceChanged(PropertyChangeEvent aEvent)
+        {
+            counter++;
+            return false;
+        }
+
+        @Notify
+        public Boolean indexedChanged(IndexedPropertyChangeEvent aEvent)
+        {
+            counter++;
+            return Boolean.FALSE;
+        }
+    }
+
+    @Test
+    public void publishDoesNotAllocate()
+    {
+        final com.sun.management.ThreadMXBean lThreads = threadBean();
+        if (lThreads == null) return;
+
+        final MessageBus lParent = new MessageBus();
+        final MessageBus lBus = new MessageBus(lParent);
+        final List<Listener> lListeners = new ArrayList<Listener>();
+        for (int i = 0; i < 10; i++)
+        {
+            final Listener lListener = new Listener();
+            lListeners.add(lListener);
+            lBus.register(lListener);
+        }
+        final Listener lBound = new Listener();
+        lBus.register(lBound, this);
+        lParent.register(new Listener());
+
+        final EventObject[] lEvents = new EventObject[] {
+            new EventObject(this),
+            new PropertyChangeEvent(this, "price", 0, 1),
+            new PropertyChangeEvent(this, "amount", 0, 1),
+            new IndexedPropertyChangeEvent(lListeners, "values", 0, 1, 3)
+        };
+
+        // Resolve the handlers and give the compiler a chance to do its work.
+        for (int i = 0; i < NR_WARMUP; i++)
+        {
+            lBus.publish(lEvents[i & 3]);
+        }
+
+        final long lThreadId = Thread.currentThread().getId();
+        final long lBefore = lThreads.getThreadAllocatedBytes(lThreadId);
+        for (int i = 0; i < NR_EVENTS; i++)
+        {
+            lBus.publish(lEvents[i & 3]);
+        }
+        final long lAllocated = lThreads.getThreadAllocatedBytes(lThreadId) - lBefore;
+
+        // Leave some room for the measurement itself, a single allocation per publish would take at least 1.6MB.
+        Assert.assertTrue(lAllocated < 64 * 1024, "Publishing allocated " + lAllocated + " bytes for " + NR_EVENTS + " events.");
+        Assert.assertTrue(lBound.counter > 0);
+    }
+
+    public static class SetListener
+    {
+        @Notify
+        public void callback(SetPropertyChangeEvent aEvent)
+        {
+            // Not interested in the other properties.
+        }
+    }
+
+    @Test
+    public void unobservedPropertyDoesNotAllocate()
+    {
+        final com.sun.management.ThreadMXBean lThreads = threadBean();
+        if (lThreads == null) return;
+
+        final MessageBus lBus = new MessageBus();
+        // Somebody listens to other events.
+        final SetListener lListener = new SetListener();
+        lBus.register(lListener);
+        final Property<Integer> lProperty = new Property<Integer>("price", true, this, lBus, 0);
+        final Integer[] lValues = new Integer[] {1000, 2000};
+
+        for (int i = 0; i < NR_WARMUP; i++)
+        {
+            lProperty.setValue(lValues[i & 1]);
+        }
+
+        final long lThreadId = Thread.currentThread().getId();
+        final long lBefore = lThreads.getThreadAllocatedBytes(lThreadId);
+        for (int i = 0; i < NR_EVENTS; i++)
+        {
+            lProperty.setValue(lValues[i & 1]);
+        }
+        final long lAllocated = lThreads.getThreadAllocatedBytes(lThreadId) - lBefore;
+
+        Assert.assertTrue(lAllocated < 64 * 1024, "Changing the property allocated " + lAllocated + " bytes for " + NR_EVENTS + " changes.");
+    }
+
+    // The allocation counters are an extension of the HotSpot virtual machine.
+    private static com.sun.management.ThreadMXBean threadBean()
+    {
+        try
+        {
+            final java.lang.management.ThreadMXBean lBean = ManagementFactory.getThreadMXBean();
+            if (lBean instanceof com.sun.management.ThreadMXBean)
+            {
+                final com.sun.management.ThreadMXBean lThreads = (com.sun.management.ThreadMXBean) lBean;
+                if (lThreads.isThreadAllocatedMemorySupported())
+                {
+                    lThreads.setThreadAllocatedMemoryEnabled(true);
+                    return lThreads;
+                }
+            }
+        }
+        catch (LinkageError e)
+        {
+            // Not a HotSpot virtual machine.
+        }
+        return null;
+    }
+}
@@ -23,12 +23,23 @@
 
 package com.sdicons.bus;
 
+import com.sdicons.prop.PropertyVetoException;
+import com.sdicons.prop.VetoablePropertyChangeEvent;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
 import java.beans.IndexedPropertyChangeEvent;
 import java.beans.PropertyChangeEvent;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.EventObject;
+import java.util.List;
+import java.util.function.Supplier;
 
 public class BusTest
 {
@@ -51,6 +62,821 @@ public class BusTest
 		Assert.assertEquals(this.counter, 0);
 	}
 
+	@Test
+	public void dispatchTableFollowsRegistrations()
+	{
+		MessageBus lBus = new MessageBus();
+		PropertyChangeEvent lEvent = new PropertyChangeEvent(this, "oele", 0, 1);
+
+		// Nobody is listening, the dispatch table remembers this.
+		this.counter = 0;
+		lBus.publish(lEvent);
+		Assert.assertEquals(this.counter, 0);
+
+		// A registration should invalidate the previous lookup.
+		lBus.register(this);
+		lBus.publish(lEvent);
+		Assert.assertEquals(this.counter, 3);
+
+		// An event without a source is looked up separately, only the handler
+		// that does not allow a null source should be skipped now.
+		this.counter = 0;
+		lBus.publish(new NullSourceEvent());
+		Assert.assertEquals(this.counter, 3);
+
+		lBus.unregister(this);
+		this.counter = 0;
+		lBus.publish(lEvent);
+		Assert.assertEquals(this.counter, 0);
+	}
+
+	@Test
+	public void dispatchTableReleasesClasses()
+	throws Exception
+	{
+		MessageBus lBus = new MessageBus();
+		final List<EventObject> lEvents = new ArrayList<EventObject>();
+		lBus.subscribe(EventObject.class, lEvents::add);
+
+		// The event classes and source classes of an unloaded plugin should not stay in memory.
+		final WeakReference<ClassLoader> lLoader = publishIsolated(lBus);
+		Assert.assertEquals(lEvents.size(), 3);
+		lEvents.clear();
+		for (int i = 0; (i < 50) && (lLoader.get() != null); i++)
+		{
+			System.gc();
+		}
+		Assert.assertNull(lLoader.get());
+		lBus.publish(new EventObject(this));
+		Assert.assertEquals(lEvents.size(), 1);
+	}
+
+	// Publish and broadcast an event of a class of another class loader, and publish an event with a source of that class.
+	private WeakReference<ClassLoader> publishIsolated(MessageBus aBus)
+	throws Exception
+	{
+		final ClassLoader lLoader = new IsolatingLoader();
+		final Class<?> lClass = lLoader.loadClass(IsolatedEvent.class.getName());
+		Assert.assertNotSame(lClass, IsolatedEvent.class);
+		final EventObject lEvent = (EventObject) lClass.getConstructor(Object.class).newInstance(this);
+		Assert.assertTrue(aBus.hasSubscribersFor(lEvent.getClass()));
+		aBus.publish(lEvent);
+		aBus.publish(new EventObject(lEvent));
+		aBus.broadcastDown(lEvent);
+		return new WeakReference<ClassLoader>(lLoader);
+	}
+
+	public static class IsolatedEvent extends EventObject
+	{
+		public IsolatedEvent(Object aSource)
+		{
+			super(aSource);
+		}
+	}
+
+	// Loads its own copy of the isolated event class, like the class loader of a plugin.
+	private static class IsolatingLoader extends ClassLoader
+	{
+		private IsolatingLoader()
+		{
+			super(BusTest.class.getClassLoader());
+		}
+
+		protected Class<?> loadClass(String aName, boolean aResolve)
+		throws ClassNotFoundException
+		{
+			if (!aName.equals(IsolatedEvent.class.getName()))
+			{
+				return super.loadClass(aName, aResolve);
+			}
+			synchronized (getClassLoadingLock(aName))
+			{
+				Class<?> lClass = findLoadedClass(aName);
+				if (lClass == null)
+				{
+					try (InputStream lIn = getParent().getResourceAsStream(aName.replace('.', '/') + ".class"))
+					{
+						final ByteArrayOutputStream lBytes = new ByteArrayOutputStream();
+						final byte[] lBuffer = new byte[4096];
+						for (int lRead = lIn.read(lBuffer); lRead >= 0; lRead = lIn.read(lBuffer))
+						{
+							lBytes.write(lBuffer, 0, lRead);
+						}
+						lClass = defineClass(aName, lBytes.toByteArray(), 0, lBytes.size());
+					}
+					catch (IOException e)
+					{
+						throw new ClassNotFoundException(aName, e);
+					}
+				}
+				return lClass;
+			}
+		}
+	}
+
+	@Test
+	public void routesFollowRegistrations()
+	{
+		MessageBus lBus = new MessageBus();
+		lBus.setCompiledDispatch(1);
+		final List<String> lCalls = new ArrayList<String>();
+		final PropertyChangeEvent lEvent = new PropertyChangeEvent(this, "oele", 0, 1);
+
+		// Each registration is followed by a publication, the route is brought up to date every time.
+		lBus.subscribe(PropertyChangeEvent.class, aEvent -> lCalls.add("first"));
+		lBus.publish(lEvent);
+		lBus.intercept(PropertyChangeEvent.class, 5, aEvent -> lCalls.add("high") && false);
+		lBus.publish(lEvent);
+		lBus.subscribe(VetoablePropertyChangeEvent.class, aEvent -> lCalls.add("other"));
+		lBus.publish(lEvent);
+		lBus.intercept(PropertyChangeEvent.class, -5, aEvent -> lCalls.add("low") && false);
+		lBus.publish(lEvent);
+		lBus.subscribe(PropertyChangeEvent.class, aEvent -> lCalls.add("second"));
+		lCalls.clear();
+		lBus.publish(lEvent);
+		Assert.assertEquals(lCalls, Arrays.asList("high", "first", "second", "low"));
+
+		Assert.assertFalse(lBus.hasSubscribersFor(EventObject.class));
+		lBus.subscribe(EventObject.class, aEvent -> lCalls.add("any"));
+		Assert.assertTrue(lBus.hasSubscribersFor(EventObject.class));
+		lCalls.clear();
+		lBus.publish(lEvent);
+		Assert.assertEquals(lCalls, Arrays.asList("high", "first", "second", "any", "low"));
+	}
+
+	@Test
+	public void routesFollowRemovals()
+	{
+		MessageBus lBus = new MessageBus();
+		lBus.setCompiledDispatch(1);
+		final List<String> lCalls = new ArrayList<String>();
+		final PropertyChangeEvent lEvent = new PropertyChangeEvent(this, "oele", 0, 1);
+		final List<Subscription> lSubscriptions = new ArrayList<Subscription>();
+		for (int i = 0; i < 10; i++)
+		{
+			final String lName = "f" + i;
+			lSubscriptions.add(lBus.subscribe(PropertyChangeEvent.class, aEvent -> lCalls.add(lName)));
+		}
+		lBus.register(this);
+		lBus.publish(lEvent);
+
+		// A closed subscription is not called anymore, not even by the compiled route.
+		lSubscriptions.get(3).close();
+		lCalls.clear();
+		this.counter = 0;
+		lBus.publish(lEvent);
+		Assert.assertEquals(lCalls, Arrays.asList("f0", "f1", "f2", "f4", "f5", "f6", "f7", "f8", "f9"));
+		Assert.assertEquals(this.counter, 3);
+
+		lBus.unregister(this);
+		this.counter = 0;
+		lBus.publish(lEvent);
+		Assert.assertEquals(this.counter, 0);
+		Assert.assertFalse(lBus.hasSubscribersFor(EventObject.class));
+		Assert.assertTrue(lBus.hasSubscribersFor(PropertyChangeEvent.class));
+
+		for (Subscription lSubscription : lSubscriptions)
+		{
+			lSubscription.close();
+		}
+		Assert.assertFalse(lBus.hasSubscribersFor(PropertyChangeEvent.class));
+		lCalls.clear();
+		lBus.publish(lEvent);
+		Assert.assertTrue(lCalls.isEmpty());
+		Assert.assertEquals(lBus.getNrSubscribers(), 0);
+	}
+
+	@Test
+	public void unregisterAll()
+	{
+		MessageBus lBus = new MessageBus();
+		List<BusTest> lSubscribers = new ArrayList<BusTest>();
+		for (int i = 0; i < 100; i++)
+		{
+			BusTest lSubscriber = new BusTest();
+			lSubscribers.add(lSubscriber);
+			lBus.register(lSubscriber);
+		}
+		lBus.register(this);
+		Assert.assertEquals(lBus.getNrSubscribers(), 505);
+
+		// Only the handlers of the specified subscribers are removed.
+		lBus.unregisterAll(lSubscribers);
+		Assert.assertEquals(lBus.getNrSubscribers(), 5);
+		this.counter = 0;
+		lBus.publish(new PropertyChangeEvent(this, "oele", 0, 1));
+		Assert.assertEquals(this.counter, 3);
+		for (BusTest lSubscriber : lSubscribers)
+		{
+			Assert.assertEquals(lSubscriber.counter, 0);
+		}
+
+		// Unregistering twice does no harm.
+		lBus.unregisterAll(lSubscribers);
+		lBus.unregister(this);
+		Assert.assertEquals(lBus.getNrSubscribers(), 0);
+	}
+
+	public static class SourceListener
+	{
+		private int counter = 0;
+
+		@Notify
+		public void callback(PropertyChangeEvent aEvent)
+		{
+			this.counter++;
+		}
+	}
+
+	@Test
+	public void sourceSubscriptions()
+	{
+		MessageBus lBus = new MessageBus();
+		Object lOrder1 = new Object();
+		Object lOrder2 = new Object();
+		SourceListener lListener1 = new SourceListener();
+		SourceListener lListener2 = new SourceListener();
+		SourceListener lAll = new SourceListener();
+		lBus.register(lListener1, lOrder1);
+		lBus.register(lListener2, lOrder2);
+		lBus.register(lAll);
+
+		lBus.publish(new PropertyChangeEvent(lOrder1, "oele", 0, 1));
+		lBus.publish(new PropertyChangeEvent(lOrder1, "oele", 1, 2));
+		lBus.publish(new PropertyChangeEvent(lOrder2, "oele", 0, 1));
+		lBus.publish(new PropertyChangeEvent(this, "oele", 0, 1));
+		Assert.assertEquals(lListener1.counter, 2);
+		Assert.assertEquals(lListener2.counter, 1);
+		Assert.assertEquals(lAll.counter, 4);
+
+		// The same subscriber can be bound to more than one source.
+		lBus.register(lListener2, lOrder1);
+		lBus.publish(new PropertyChangeEvent(lOrder1, "oele", 2, 3));
+		Assert.assertEquals(lListener2.counter, 2);
+
+		lBus.unregister(lListener2);
+		lBus.publish(new PropertyChangeEvent(lOrder2, "oele", 1, 2));
+		Assert.assertEquals(lListener2.counter, 2);
+		Assert.assertEquals(lBus.getNrSubscribers(), 2);
+	}
+
+	@Test
+	public void interestQuery()
+	{
+		MessageBus lParent = new MessageBus();
+		MessageBus lBus = new MessageBus(lParent);
+		Assert.assertFalse(lBus.hasSubscribersFor(PropertyChangeEvent.class));
+
+		// The parent bus counts as well.
+		SourceListener lListener = new SourceListener();
+		lParent.register(lListener);
+		Assert.assertTrue(lBus.hasSubscribersFor(PropertyChangeEvent.class));
+		Assert.assertTrue(lBus.hasSubscribersFor(IndexedPropertyChangeEvent.class));
+		Assert.assertFalse(lBus.hasSubscribersFor(EventObject.class));
+		Assert.assertFalse(lBus.hasSubscribersFor(VetoablePropertyChangeEvent.class));
+
+		lParent.unregister(lListener);
+		Assert.assertFalse(lBus.hasSubscribersFor(PropertyChangeEvent.class));
+		lBus.register(this);
+		Assert.assertTrue(lBus.hasSubscribersFor(VetoablePropertyChangeEvent.class));
+	}
+
+	@Test
+	public void ancestorChain()
+	{
+		// A chain of six buses, only the root and the bus in the middle get handlers.
+		MessageBus lRoot = new MessageBus();
+		MessageBus lMiddle = new MessageBus(new MessageBus(lRoot));
+		MessageBus lLeaf = new MessageBus(new MessageBus(new MessageBus(lMiddle)));
+		final List<String> lCalls = new ArrayList<String>();
+		lRoot.subscribe(PropertyChangeEvent.class, aEvent -> lCalls.add("root"));
+		lLeaf.publish(new PropertyChangeEvent(this, "oele", 0, 1));
+		lLeaf.publish(new EventObject(this));
+		Assert.assertEquals(lCalls, Arrays.asList("root"));
+
+		// A change of a bus in the middle of the chain is seen by the leaf.
+		lCalls.clear();
+		Subscription lConsumer = lMiddle.intercept(PropertyChangeEvent.class, aEvent -> lCalls.add("middle"));
+		lLeaf.publish(new PropertyChangeEvent(this, "oele", 0, 1));
+		Assert.assertEquals(lCalls, Arrays.asList("middle"));
+
+		lCalls.clear();
+		lConsumer.close();
+		lLeaf.publish(new PropertyChangeEvent(this, "oele", 0, 1));
+		Assert.assertEquals(lCalls, Arrays.asList("root"));
+
+		// A sticky ancestor remembers the events that ripple up.
+		lMiddle.setSticky(8);
+		Assert.assertTrue(lLeaf.hasSubscribersFor(EventObject.class));
+		lLeaf.publish(new EventObject(this));
+		lMiddle.subscribe(EventObject.class, aEvent -> lCalls.add("late"));
+		Assert.assertEquals(lCalls, Arrays.asList("root", "late"));
+		lMiddle.setSticky(0);
+		Assert.assertFalse(new MessageBus(lRoot).hasSubscribersFor(EventObject.class));
+	}
+
+	@Test
+	public void ancestorChainOfSibling()
+	{
+		// A change of a sibling or a descendant does not drop the chains of a bus, only a change of an ancestor does.
+		MessageBus lRoot = new MessageBus();
+		MessageBus lMiddle = new MessageBus(lRoot);
+		MessageBus lLeaf = new MessageBus(lMiddle);
+		MessageBus lSibling = new MessageBus(lMiddle);
+		lRoot.subscribe(PropertyChangeEvent.class, aEvent -> {});
+		lLeaf.publish(new PropertyChangeEvent(this, "oele", 0, 1));
+		final Object lChain = lLeaf.cachedAncestors(PropertyChangeEvent.class);
+		Assert.assertNotNull(lChain);
+
+		lSibling.subscribe(PropertyChangeEvent.class, aEvent -> {});
+		new MessageBus(lLeaf).subscribe(PropertyChangeEvent.class, aEvent -> {});
+		lLeaf.publish(new PropertyChangeEvent(this, "oele", 0, 1));
+		Assert.assertSame(lLeaf.cachedAncestors(PropertyChangeEvent.class), lChain);
+
+		lMiddle.subscribe(EventObject.class, aEvent -> {});
+		Assert.assertNull(lLeaf.cachedAncestors(PropertyChangeEvent.class));
+		lLeaf.publish(new PropertyChangeEvent(this, "oele", 0, 1));
+		Assert.assertNotSame(lLeaf.cachedAncestors(PropertyChangeEvent.class), lChain);
+	}
+
+	@Test
+	public void ancestorChangesArePushedDown()
+	{
+		// A change of the root reaches the chains of its grandchildren, also through a striped bus.
+		MessageBus lRoot = new MessageBus();
+		MessageBus lStriped = new StripedMessageBus(lRoot, 4);
+		MessageBus lLeaf = new MessageBus(lStriped);
+		final List<String> lCalls = new ArrayList<String>();
+		final PropertyChangeEvent lEvent = new PropertyChangeEvent(this, "oele", 0, 1);
+		lLeaf.publish(lEvent);
+		lStriped.publish(lEvent);
+		Assert.assertNotNull(lLeaf.cachedAncestors(PropertyChangeEvent.class));
+		Assert.assertNotNull(lStriped.cachedAncestors(PropertyChangeEvent.class));
+
+		lRoot.subscribe(PropertyChangeEvent.class, aEvent -> lCalls.add("root"));
+		Assert.assertNull(lLeaf.cachedAncestors(PropertyChangeEvent.class));
+		Assert.assertNull(lStriped.cachedAncestors(PropertyChangeEvent.class));
+		lLeaf.publish(lEvent);
+		lStriped.publish(lEvent);
+		Assert.assertEquals(lCalls, Arrays.asList("root", "root"));
+	}
+
+	@Test
+	public void broadcastDown()
+	{
+		MessageBus lRoot = new MessageBus();
+		final List<MessageBus> lSessions = new ArrayList<MessageBus>();
+		final List<String> lCalls = new ArrayList<String>();
+		for (int i = 0; i < 1000; i++)
+		{
+			lSessions.add(new MessageBus(lRoot));
+		}
+		// The sessions become children of the root when they are used.
+		Assert.assertEquals(lRoot.getNrChildren(), 0);
+		for (MessageBus lSession : lSessions)
+		{
+			lSession.publish(new EventObject(this));
+		}
+		Assert.assertEquals(lRoot.getNrChildren(), 1000);
+
+		// Only a few sessions and a grandchild listen.
+		MessageBus lView = new MessageBus(lSessions.get(500));
+		lSessions.get(10).subscribe(PropertyChangeEvent.class, aEvent -> lCalls.add("10"));
+		lSessions.get(20).intercept(PropertyChangeEvent.class, aEvent -> lCalls.add("20"));
+		lView.subscribe(EventObject.class, aEvent -> lCalls.add("view"));
+		lRoot.subscribe(PropertyChangeEvent.class, aEvent -> lCalls.add("root"));
+		lRoot.broadcastDown(new PropertyChangeEvent(this, "oele", 0, 1));
+		Assert.assertEquals(lCalls, Arrays.asList("root", "10", "20", "view"));
+
+		// A consumer stops the broadcast below its bus, and the event does not ripple up.
+		lCalls.clear();
+		MessageBus lChildOf20 = new MessageBus(lSessions.get(20));
+		lChildOf20.subscribe(PropertyChangeEvent.class, aEvent -> lCalls.add("child of 20"));
+		lSessions.get(500).broadcastDown(new PropertyChangeEvent(this, "oele", 0, 1));
+		Assert.assertEquals(lCalls, Arrays.asList("view"));
+		lCalls.clear();
+		lRoot.broadcastDown(new EventObject(this));
+		Assert.assertEquals(lCalls, Arrays.asList("view"));
+		lCalls.clear();
+		lRoot.broadcastDown(new PropertyChangeEvent(this, "oele", 0, 1));
+		Assert.assertEquals(lCalls, Arrays.asList("root", "10", "20", "view"));
+
+		// The parent does not keep its children alive.
+		lSessions.clear();
+		lView = null;
+		lChildOf20 = null;
+		for (int i = 0; (i < 50) && (lRoot.getNrChildren() > 0); i++)
+		{
+			System.gc();
+		}
+		Assert.assertEquals(lRoot.getNrChildren(), 0);
+		lCalls.clear();
+		lRoot.broadcastDown(new PropertyChangeEvent(this, "oele", 0, 1));
+		Assert.assertEquals(lCalls, Arrays.asList("root"));
+	}
+
+	@Test
+	public void attachAfterConstruction()
+	{
+		// The parent cannot see a subclass before its constructor is complete.
+		MessageBus lRoot = new MessageBus();
+		SessionBus lSession = new SessionBus(lRoot);
+		Assert.assertEquals(lSession.childrenOfParent, 0);
+		lSession.subscribe(EventObject.class, aEvent -> {});
+		Assert.assertEquals(lRoot.getNrChildren(), 1);
+	}
+
+	private static class SessionBus extends MessageBus
+	{
+		private final int childrenOfParent;
+
+		private SessionBus(MessageBus aParent)
+		{
+			super(aParent);
+			this.childrenOfParent = aParent.getNrChildren();
+		}
+	}
+
+	@Test
+	public void broadcastToAsynchronousChild()
+	{
+		MessageBus lRoot = new MessageBus();
+		MessageBus lSession = new MessageBus(lRoot);
+		MessageBus lView = new MessageBus(lSession);
+		final List<Runnable> lTasks = new ArrayList<Runnable>();
+		final List<String> lCalls = new ArrayList<String>();
+		lSession.setExecutor(lTasks::add);
+		lSession.setAsynchronous(true);
+		lSession.intercept(PropertyChangeEvent.class, aEvent -> lCalls.add("session"));
+		lView.subscribe(PropertyChangeEvent.class, aEvent -> lCalls.add("view"));
+
+		// The session handles the broadcast in the background, it cannot consume it for the view.
+		lRoot.broadcastDown(new PropertyChangeEvent(this, "oele", 0, 1));
+		Assert.assertEquals(lCalls, Arrays.asList("view"));
+		Assert.assertEquals(lTasks.size(), 1);
+		lTasks.get(0).run();
+		Assert.assertEquals(lCalls, Arrays.asList("view", "session"));
+	}
+
+	@Test
+	public void broadcastVeto()
+	{
+		MessageBus lRoot = new MessageBus();
+		MessageBus lSession = new MessageBus(lRoot);
+		final List<EventObject> lFailures = new ArrayList<EventObject>();
+		lSession.setErrorHandler((aEvent, aError) -> lFailures.add(aEvent));
+		lSession.register(new Consumer());
+
+		// A veto reaches the caller of the broadcast, the error handler of the session does not see it.
+		try
+		{
+			lRoot.broadcastDown(new VetoablePropertyChangeEvent(this, "oele", 0, 1));
+			Assert.fail();
+		}
+		catch (PropertyVetoException e)
+		{
+			// Should arrive here.
+		}
+		Assert.assertTrue(lFailures.isEmpty());
+
+		// Other failures still go to the error handler.
+		lRoot.broadcastDown(new PropertyChangeEvent(this, "oele", 0, 1));
+		Assert.assertEquals(lFailures.size(), 1);
+	}
+
+	@Test
+	public void lazyPublish()
+	{
+		MessageBus lParent = new MessageBus();
+		MessageBus lBus = new MessageBus(lParent);
+		final int[] lCreated = new int[1];
+		final Supplier<PropertyChangeEvent> lSupplier = new Supplier<PropertyChangeEvent>()
+		{
+			public PropertyChangeEvent get()
+			{
+				lCreated[0]++;
+				return new PropertyChangeEvent(BusTest.this, "oele", 0, 1);
+			}
+		};
+
+		// Nobody listens, the event is not created.
+		lBus.publish(PropertyChangeEvent.class, lSupplier);
+		Assert.assertEquals(lCreated[0], 0);
+
+		// A handler on the parent bus receives the event.
+		SourceListener lListener = new SourceListener();
+		lParent.register(lListener);
+		lBus.publish(PropertyChangeEvent.class, lSupplier);
+		Assert.assertEquals(lCreated[0], 1);
+		Assert.assertEquals(lListener.counter, 1);
+	}
+
+	@Test
+	public void functionalSubscriptions()
+	{
+		MessageBus lBus = new MessageBus();
+		final List<EventObject> lReceived = new ArrayList<EventObject>();
+		Subscription lAll = lBus.subscribe(PropertyChangeEvent.class, lReceived::add);
+		Subscription lConsumer = lBus.intercept(PropertyChangeEvent.class, aEvent -> "consumed".equals(aEvent.getPropertyName()));
+		lBus.register(this);
+
+		// The bus holds the functions, they are not collected.
+		System.gc();
+		this.counter = 0;
+		lBus.publish(new PropertyChangeEvent(this, "oele", 0, 1));
+		Assert.assertEquals(lReceived.size(), 1);
+		Assert.assertEquals(this.counter, 3);
+
+		// The function consumes the event, the handlers registered later are not called.
+		this.counter = 0;
+		lBus.publish(new PropertyChangeEvent(this, "consumed", 0, 1));
+		Assert.assertEquals(lReceived.size(), 2);
+		Assert.assertEquals(this.counter, 0);
+
+		// Other event types do not reach the functions.
+		lBus.publish(new EventObject(this));
+		Assert.assertEquals(lReceived.size(), 2);
+
+		lAll.close();
+		lAll.close();
+		lConsumer.close();
+		this.counter = 0;
+		lBus.publish(new PropertyChangeEvent(this, "consumed", 0, 1));
+		Assert.assertEquals(lReceived.size(), 2);
+		Assert.assertEquals(this.counter, 3);
+		Assert.assertEquals(lBus.getNrSubscribers(), 5);
+	}
+
+	public static class Cache
+	{
+		private int counter = 0;
+
+		@Notify(priority = 10)
+		public boolean lookup(PropertyChangeEvent aEvent)
+		{
+			this.counter++;
+			return "cached".equals(aEvent.getPropertyName());
+		}
+	}
+
+	@Test
+	public void priorities()
+	{
+		MessageBus lBus = new MessageBus();
+		final List<String> lCalls = new ArrayList<String>();
+		lBus.register(this);
+		lBus.subscribe(PropertyChangeEvent.class, aEvent -> lCalls.add("function"));
+		lBus.intercept(PropertyChangeEvent.class, 5, aEvent -> lCalls.add("intercept") && false);
+		Cache lCache = new Cache();
+		lBus.register(lCache);
+		Cache lBound = new Cache();
+		lBus.register(lBound, this);
+
+		// The cache was registered last, it is called first and it consumes the event.
+		this.counter = 0;
+		lBus.publish(new PropertyChangeEvent(this, "cached", 0, 1));
+		Assert.assertEquals(lCache.counter, 1);
+		Assert.assertEquals(lBound.counter, 0);
+		Assert.assertEquals(this.counter, 0);
+		Assert.assertTrue(lCalls.isEmpty());
+
+		// Without consumption everybody is called, the higher priorities first.
+		lBus.publish(new PropertyChangeEvent(this, "oele", 0, 1));
+		Assert.assertEquals(lCache.counter, 2);
+		Assert.assertEquals(lBound.counter, 1);
+		Assert.assertEquals(this.counter, 3);
+		Assert.assertEquals(lCalls, Arrays.asList("intercept", "function"));
+	}
+
+	// The generated dispatcher cannot refer to a private class, it is called with reflection.
+	private static class PrivateListener
+	{
+		private int counter = 0;
+
+		@Notify
+		public boolean callback(PropertyChangeEvent aEvent)
+		{
+			this.counter++;
+			return true;
+		}
+	}
+
+	@Test
+	public void generatedDispatchers()
+	{
+		Assert.assertNotNull(NotifyDispatcher.find(SourceListener.class));
+		Assert.assertNotNull(NotifyDispatcher.find(BusTest.class));
+		Assert.assertNull(NotifyDispatcher.find(PrivateListener.class));
+		Assert.assertNull(NotifyDispatcher.find(InvalidSubscriber.class));
+
+		// Both kinds of subscribers are called in the same way.
+		MessageBus lBus = new MessageBus();
+		SourceListener lGenerated = new SourceListener();
+		PrivateListener lReflective = new PrivateListener();
+		lBus.register(lGenerated);
+		lBus.register(lReflective);
+		lBus.publish(new PropertyChangeEvent(this, "oele", 0, 1));
+		Assert.assertEquals(lGenerated.counter, 1);
+		Assert.assertEquals(lReflective.counter, 1);
+	}
+
+	public static class PropertyListener
+	{
+		private int counter = 0;
+
+		@Notify(property = "oele")
+		public void callback(PropertyChangeEvent aEvent)
+		{
+			this.counter++;
+		}
+	}
+
+	@Test
+	public void compiledDispatch()
+	{
+		MessageBus lBus = new MessageBus();
+		lBus.setCompiledDispatch(2);
+		final List<String> lCalls = new ArrayList<String>();
+		lBus.register(this);
+		lBus.intercept(PropertyChangeEvent.class, 5, aEvent -> lCalls.add("intercept") && false);
+		Cache lCache = new Cache();
+		lBus.register(lCache);
+		PropertyListener lListener = new PropertyListener();
+		lBus.register(lListener);
+
+		// The chain is compiled at the second publication, the results are the same before and after.
+		for (int i = 1; i <= 3; i++)
+		{
+			this.counter = 0;
+			lBus.publish(new PropertyChangeEvent(this, "oele", 0, 1));
+			Assert.assertEquals(this.counter, 3);
+			Assert.assertEquals(lCache.counter, 2 * i - 1);
+			Assert.assertEquals(lListener.counter, i);
+			Assert.assertEquals(lCalls.size(), i);
+
+			// The cache consumes the event.
+			lBus.publish(new PropertyChangeEvent(this, "cached", 0, 1));
+			Assert.assertEquals(this.counter, 3);
+			Assert.assertEquals(lCache.counter, 2 * i);
+			Assert.assertEquals(lListener.counter, i);
+		}
+
+		// A new subscriber drops the chain.
+		Cache lOther = new Cache();
+		lBus.register(lOther);
+		for (int i = 1; i <= 3; i++)
+		{
+			lBus.publish(new PropertyChangeEvent(this, "oele", 0, 1));
+			Assert.assertEquals(lOther.counter, i);
+		}
+		lBus.unregister(lListener);
+		lBus.publish(new PropertyChangeEvent(this, "oele", 0, 1));
+		lBus.publish(new PropertyChangeEvent(this, "oele", 0, 1));
+		Assert.assertEquals(lListener.counter, 6);
+		Assert.assertEquals(lOther.counter, 5);
+
+		// The exceptions of the compiled handlers are the same as those of the other handlers.
+		checkInvokers(new MessageBus(), 1);
+		checkInvokers(new MessageBus(null, new MethodHandleInvokerFactory()), 1);
+		checkInvokers(new MessageBus(null, new ReflectiveInvokerFactory()), 1);
+	}
+
+	@Test
+	public void invokerStrategies()
+	{
+		checkInvokers(new MessageBus(null, new MethodHandleInvokerFactory()), 0);
+		checkInvokers(new MessageBus(null, new ReflectiveInvokerFactory()), 0);
+	}
+
+	@Test
+	public void staticHandlers()
+	{
+		final MessageBus[] lBuses = {new MessageBus(), new MessageBus(null, new MethodHandleInvokerFactory()), new MessageBus(null, new ReflectiveInvokerFactory())};
+		StaticListener.counter = 0;
+		for (MessageBus lBus : lBuses)
+		{
+			lBus.register(new StaticListener());
+			lBus.publish(new EventObject(this));
+			lBus.setCompiledDispatch(1);
+			lBus.publish(new EventObject(this));
+		}
+		Assert.assertEquals(StaticListener.counter, 6);
+	}
+
+	public static class StaticListener
+	{
+		private static int counter = 0;
+
+		@Notify
+		public static void callback(EventObject aEvent)
+		{
+			counter++;
+		}
+	}
+
+	private void checkInvokers(MessageBus aBus, int aCompileThreshold)
+	{
+		final MessageBus lBus = aBus;
+		lBus.setCompiledDispatch(aCompileThreshold);
+		final Consumer lFirst = new Consumer();
+		final Consumer lSecond = new Consumer();
+		lBus.register(lFirst);
+		lBus.register(lSecond);
+
+		// The boxed result of the first handler is interpreted, the event is consumed.
+		lBus.publish(new EventObject(this));
+		Assert.assertEquals(lFirst.calls, 1);
+		Assert.assertEquals(lSecond.calls, 0);
+
+		// Vetoes pass unchanged, other exceptions are wrapped.
+		try
+		{
+			lBus.publish(new VetoablePropertyChangeEvent(this, "oele", 0, 1));
+			Assert.fail();
+		}
+		catch (PropertyVetoException e)
+		{
+			// Should arrive here.
+		}
+		try
+		{
+			lBus.publish(new PropertyChangeEvent(this, "oele", 0, 1));
+			Assert.fail();
+		}
+		catch (PropertyVetoException e)
+		{
+			Assert.fail();
+		}
+		catch (RuntimeException e)
+		{
+			Assert.assertTrue(e.getCause() instanceof InvocationTargetException);
+			Assert.assertTrue(e.getCause().getCause() instanceof IllegalStateException);
+		}
+	}
+
+	public static class Consumer
+	{
+		private int calls = 0;
+
+		@Notify
+		public Boolean consume(EventObject aEvent)
+		{
+			this.calls++;
+			return !(aEvent instanceof VetoablePropertyChangeEvent) && !(aEvent instanceof PropertyChangeEvent);
+		}
+
+		@Notify
+		public void veto(VetoablePropertyChangeEvent aEvent)
+		{
+			throw new PropertyVetoException("No.");
+		}
+
+		@Notify
+		public void fail(PropertyChangeEvent aEvent)
+		{
+			throw new IllegalStateException("Failure.");
+		}
+	}
+
+	@Test
+	public void invalidHandlersAreRejected()
+	{
+		final MessageBus lBus = new MessageBus();
+		// The check is repeated for every instance, a failing class is not cached.
+		for (int i = 0; i < 2; i++)
+		{
+			try
+			{
+				lBus.register(new InvalidSubscriber());
+				Assert.fail();
+			}
+			catch (IllegalArgumentException e)
+			{
+				// Should arrive here.
+			}
+		}
+		Assert.assertEquals(lBus.getNrSubscribers(), 0);
+	}
+
+	@SuppressWarnings("messagebus")
+	public static class InvalidSubscriber
+	{
+		@Notify
+		public void callback(String aEvent)
+		{
+			// Not an EventObject.
+		}
+	}
+
+	private static class NullSourceEvent extends EventObject
+	{
+		private NullSourceEvent()
+		{
+			super(new Object());
+			this.source = null;
+		}
+	}
+
 	@Notify
 	public void callback1(EventObject aEvent)
 	{
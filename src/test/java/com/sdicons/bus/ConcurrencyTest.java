@@ -0,0 +1,310 @@
+/*
+ * Library "lib-messagebus".
+ * Copyright (c) 2011 Bruno Ranschaert, SDI-Consulting BVBA.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sdicons.bus;
+
+import com.sdicons.prop.PropertyVetoException;
+import com.sdicons.prop.VetoablePropertyChangeEvent;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.beans.PropertyChangeEvent;
+import java.util.ArrayList;
+import java.util.EventObject;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class ConcurrencyTest
+{
+    private static final int NR_THREADS = 4;
+    private static final int NR_EVENTS = 20000;
+
+    public static class Listener
+    {
+        private final AtomicInteger counter;
+
+        public Listener(AtomicInteger aCounter)
+        {
+            counter = aCounter;
+        }
+
+        @Notify
+        public void callback(EventObject aEvent)
+        {
+            counter.incrementAndGet();
+        }
+    }
+
+    @Test
+    public void publishWhileLocked()
+    throws InterruptedException
+    {
+        final MessageBus lBus = new MessageBus();
+        final AtomicInteger lCounter = new AtomicInteger();
+        final Listener lListener = new Listener(lCounter);
+        lBus.register(lListener);
+        lBus.unregister(new Listener(lCounter));
+
+        // A registration holds the bus lock, the publishers do not wait for it.
+        final CountDownLatch lPublished = new CountDownLatch(1);
+        synchronized (lBus)
+        {
+            new Thread()
+            {
+                public void run()
+                {
+                    lBus.publish(new EventObject(lBus));
+                    lPublished.countDown();
+                }
+            }.start();
+            Assert.assertTrue(lPublished.await(10, TimeUnit.SECONDS));
+        }
+        Assert.assertEquals(lCounter.get(), 1);
+    }
+
+    @Test
+    public void publishWhileRegistering()
+    throws InterruptedException
+    {
+        final MessageBus lBus = new MessageBus();
+        final AtomicInteger lStable = new AtomicInteger();
+        final AtomicInteger lChurn = new AtomicInteger();
+        final AtomicReference<Throwable> lFailure = new AtomicReference<Throwable>();
+        // This listener stays registered during the whole test.
+        final Listener lListener = new Listener(lStable);
+        lBus.register(lListener);
+
+        final List<Thread> lThreads = new ArrayList<Thread>();
+        for (int i = 0; i < NR_THREADS; i++)
+        {
+            lThreads.add(new Thread()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        for (int j = 0; j < NR_EVENTS; j++)
+                        {
+                            lBus.publish(new EventObject(this));
+                        }
+                    }
+                    catch (Throwable e)
+                    {
+                        lFailure.set(e);
+                    }
+                }
+            });
+        }
+        // Register and unregister listeners while the events are published.
+        lThreads.add(new Thread()
+        {
+            public void run()
+            {
+                try
+                {
+                    for (int j = 0; j < NR_EVENTS; j++)
+                    {
+                        final Listener lTemp = new Listener(lChurn);
+                        lBus.register(lTemp);
+                        lBus.unregister(lTemp);
+                    }
+                }
+                catch (Throwable e)
+                {
+                    lFailure.set(e);
+                }
+            }
+        });
+
+        for (Thread lThread : lThreads) lThread.start();
+        for (Thread lThread : lThreads) lThread.join();
+
+        Assert.assertNull(lFailure.get());
+        Assert.assertEquals(lStable.get(), NR_THREADS * NR_EVENTS);
+        Assert.assertEquals(lBus.getNrSubscribers(), 1);
+    }
+
+    public static class SlowListener
+    {
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final CountDownLatch done = new CountDownLatch(1);
+
+        @Notify
+        public void callback(PropertyChangeEvent aEvent)
+        throws InterruptedException
+        {
+            release.await();
+            done.countDown();
+            throw new IllegalStateException("Failure.");
+        }
+
+        @Notify
+        public void veto(VetoablePropertyChangeEvent aEvent)
+        {
+            throw new PropertyVetoException("No.");
+        }
+    }
+
+    @Test
+    public void asynchronousPublish()
+    throws InterruptedException
+    {
+        final ExecutorService lExecutor = Executors.newSingleThreadExecutor();
+        try
+        {
+            final MessageBus lBus = new MessageBus();
+            final List<RuntimeException> lErrors = new ArrayList<RuntimeException>();
+            lBus.setExecutor(lExecutor);
+            lBus.setAsynchronous(true);
+            lBus.setErrorHandler(new DeliveryErrorHandler()
+            {
+                public void deliveryFailed(EventObject aEvent, RuntimeException aError)
+                {
+                    synchronized (lErrors)
+                    {
+                        lErrors.add(aError);
+                    }
+                }
+            });
+            final SlowListener lListener = new SlowListener();
+            lBus.register(lListener);
+
+            // The publisher is not blocked by the slow handler.
+            lBus.publish(new PropertyChangeEvent(this, "oele", 0, 1));
+            Assert.assertEquals(lListener.done.getCount(), 1);
+            lListener.release.countDown();
+            Assert.assertTrue(lListener.done.await(10, TimeUnit.SECONDS));
+
+            // Vetoes are still thrown to the publisher.
+            try
+            {
+                lBus.publish(new VetoablePropertyChangeEvent(this, "oele", 0, 1));
+                Assert.fail();
+            }
+            catch (PropertyVetoException e)
+            {
+                // Should arrive here.
+            }
+
+            // The failure of the handler arrives in the callback.
+            lExecutor.shutdown();
+            Assert.assertTrue(lExecutor.awaitTermination(10, TimeUnit.SECONDS));
+            Assert.assertEquals(lErrors.size(), 1);
+            Assert.assertTrue(lErrors.get(0).getCause().getCause() instanceof IllegalStateException);
+        }
+        finally
+        {
+            lExecutor.shutdownNow();
+        }
+    }
+
+    public static class BlockingListener
+    {
+        private static final AtomicInteger running = new AtomicInteger();
+        private static final AtomicInteger maxRunning = new AtomicInteger();
+        private final CountDownLatch started;
+        private final CountDownLatch done;
+
+        public BlockingListener(CountDownLatch aStarted, CountDownLatch aDone)
+        {
+            started = aStarted;
+            done = aDone;
+        }
+
+        @Notify
+        public boolean callback(EventObject aEvent)
+        throws InterruptedException
+        {
+            final int lRunning = running.incrementAndGet();
+            synchronized (maxRunning)
+            {
+                if (lRunning > maxRunning.get()) maxRunning.set(lRunning);
+            }
+            // Simulate blocking I/O, the first deliveries wait for each other so they overlap.
+            started.countDown();
+            started.await(10, TimeUnit.SECONDS);
+            running.decrementAndGet();
+            done.countDown();
+            // Consumption is ignored in parallel mode.
+            return true;
+        }
+    }
+
+    @Test
+    public void parallelDelivery()
+    throws InterruptedException
+    {
+        final int lNrListeners = 8;
+        final CountDownLatch lStarted = new CountDownLatch(2);
+        final CountDownLatch lDone = new CountDownLatch(lNrListeners);
+        final MessageBus lBus = new MessageBus();
+        lBus.setExecutor(new VirtualThreadExecutor(2));
+        lBus.setParallelDelivery(true);
+        final List<BlockingListener> lListeners = new ArrayList<BlockingListener>();
+        for (int i = 0; i < lNrListeners; i++)
+        {
+            final BlockingListener lListener = new BlockingListener(lStarted, lDone);
+            lListeners.add(lListener);
+            lBus.register(lListener);
+        }
+
+        lBus.publishAsync(new EventObject(this));
+        Assert.assertTrue(lDone.await(10, TimeUnit.SECONDS));
+        // The deliveries ran in parallel without exceeding the concurrency of the executor.
+        Assert.assertEquals(BlockingListener.maxRunning.get(), 2);
+    }
+
+    @Test
+    public void publishFromExecutor()
+    throws InterruptedException
+    {
+        // A handler running on the only thread of the executor publishes again, the new task waits instead of the handler.
+        final MessageBus lBus = new MessageBus();
+        lBus.setExecutor(new VirtualThreadExecutor(1));
+        lBus.setAsynchronous(true);
+        final CountDownLatch lDone = new CountDownLatch(1);
+        final AtomicInteger lRunning = new AtomicInteger();
+        final AtomicInteger lMaxRunning = new AtomicInteger();
+        lBus.subscribe(PropertyChangeEvent.class, e -> {
+            lMaxRunning.accumulateAndGet(lRunning.incrementAndGet(), Math::max);
+            if ("first".equals(e.getPropertyName()))
+            {
+                lBus.publish(new PropertyChangeEvent(this, "second", 0, 1));
+            }
+            else
+            {
+                lDone.countDown();
+            }
+            lRunning.decrementAndGet();
+        });
+
+        lBus.publish(new PropertyChangeEvent(this, "first", 0, 1));
+        Assert.assertTrue(lDone.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(lMaxRunning.get(), 1);
+    }
+}
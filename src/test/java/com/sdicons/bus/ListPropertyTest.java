@@ -23,11 +23,16 @@
 
 package com.sdicons.bus;
 
+import com.sdicons.prop.ChangeType;
 import com.sdicons.prop.ListProperty;
 import com.sdicons.prop.ListPropertyChangeEvent;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 public class ListPropertyTest
 {
 
@@ -69,6 +74,86 @@ public class ListPropertyTest
         Assert.assertEquals(counter, 4);
     }
 
+    @Test
+    public void testAddAll()
+    {
+        // The change events of a bulk operation are published as a batch,
+        // the events that are not consumed on the child reach the parent.
+        MessageBus lParent = new MessageBus();
+        MessageBus lBus = new MessageBus(lParent);
+        prop = new ListProperty<String>("farm", true, this, lBus);
+        final Parent lListener = new Parent();
+        lParent.register(lListener);
+        lBus.register(this);
+
+        counter = 0;
+        prop.addValue("chicken");
+        prop.addAllValues(1, Arrays.asList("cow", "pig", "goat"));
+        Assert.assertEquals(prop.getSize(), 4);
+        Assert.assertEquals(prop.getValue(3), "goat");
+        Assert.assertEquals(counter, 4);
+        Assert.assertEquals(lListener.indexes, Arrays.asList(0, 1, 2, 3));
+    }
+
+    @Test
+    public void testFailureInBatch()
+    {
+        // A handler fails on the third event, the two events before it have already
+        // been delivered on the child and still ripple to the parent.
+        MessageBus lParent = new MessageBus();
+        MessageBus lBus = new MessageBus(lParent);
+        final Parent lListener = new Parent();
+        lParent.register(lListener);
+        lBus.subscribe(ListPropertyChangeEvent.class, e -> {
+            if (e.getIndex() == 2) throw new IllegalStateException("broken");
+        });
+
+        List<ListPropertyChangeEvent> lEvents = new ArrayList<ListPropertyChangeEvent>();
+        for (int i = 0; i < 4; i++)
+        {
+            lEvents.add(new ListPropertyChangeEvent(this, "farm", "animal", i, ChangeType.INSERT));
+        }
+        try
+        {
+            lBus.publishAll(lEvents);
+            Assert.fail("The failure of the handler should reach the publisher.");
+        }
+        catch (RuntimeException e)
+        {
+            // Should arrive here.
+            Assert.assertEquals(e.getSuppressed().length, 0);
+        }
+        Assert.assertEquals(lListener.indexes, Arrays.asList(0, 1));
+
+        // The parent fails as well, the caller still gets the first failure and the one of the parent is added to it.
+        final RuntimeException lParentFailure = new IllegalStateException("parent");
+        lParent.subscribe(ListPropertyChangeEvent.class, e -> {
+            throw lParentFailure;
+        });
+        try
+        {
+            lBus.publishAll(lEvents);
+            Assert.fail("The failure of the handler should reach the publisher.");
+        }
+        catch (RuntimeException e)
+        {
+            Assert.assertNotSame(e, lParentFailure);
+            Assert.assertEquals(e.getSuppressed().length, 1);
+        }
+        Assert.assertEquals(lListener.indexes, Arrays.asList(0, 1, 0));
+    }
+
+    public static class Parent
+    {
+        private List<Integer> indexes = new ArrayList<Integer>();
+
+        @Notify
+        public void callback(ListPropertyChangeEvent aEvent)
+        {
+            indexes.add(aEvent.getIndex());
+        }
+    }
+
     @Notify
     public void callback(ListPropertyChangeEvent aEvent)
     {
@@ -26,6 +26,7 @@ package com.sdicons.bus;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
+import java.beans.PropertyChangeEvent;
 import java.util.EventObject;
 import java.util.LinkedList;
 import java.util.List;
@@ -79,4 +80,53 @@ public class MemoryTest
         // the source of memory leaks.
         Assert.assertEquals(0, lBus.getNrSubscribers());
     }
+
+    public static class MultiListener
+    {
+        public static int counter = 0;
+
+        @Notify
+        public void callback(EventObject aEvent)
+        {
+            counter++;
+        }
+
+        @Notify(priority = 1)
+        public void change(PropertyChangeEvent aEvent)
+        {
+            counter++;
+        }
+
+        @Notify(property = "oele")
+        public void oele(PropertyChangeEvent aEvent)
+        {
+            counter++;
+        }
+    }
+
+    @Test
+    public void sharedEntries()
+    {
+        // The handlers of a listener share a single weak reference, they disappear together.
+        final List<MultiListener> lStash = new LinkedList<MultiListener>();
+        final MessageBus lBus = new MessageBus();
+        for (int i = 0; i < NR_LISTENERS; i++)
+        {
+            MultiListener lListener = new MultiListener();
+            lStash.add(lListener);
+            lBus.register(lListener);
+        }
+        Assert.assertEquals(lBus.getNrSubscribers(), 3 * NR_LISTENERS);
+
+        MultiListener.counter = 0;
+        lBus.publish(new PropertyChangeEvent(this, "oele", 0, 1));
+        Assert.assertEquals(MultiListener.counter, 3 * NR_LISTENERS);
+
+        lBus.unregister(lStash.remove(0));
+        Assert.assertEquals(lBus.getNrSubscribers(), 3 * (NR_LISTENERS - 1));
+
+        lStash.clear();
+        System.gc();
+        Assert.assertEquals(lBus.getNrSubscribers(), 0);
+    }
 }
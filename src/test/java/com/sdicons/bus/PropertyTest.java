@@ -30,6 +30,8 @@ import org.testng.Assert;
 import org.testng.annotations.Test;
 
 import java.beans.PropertyChangeEvent;
+import java.util.ArrayList;
+import java.util.List;
 
 public class PropertyTest
 {
@@ -61,6 +63,150 @@ public class PropertyTest
         Assert.assertEquals(counter, 1);
     }
 
+    public static class PriceListener
+    {
+        private int changes;
+
+        @Notify(property = "price")
+        public void priceChanged(PropertyChangeEvent aEvent)
+        {
+            Assert.assertEquals(aEvent.getPropertyName(), "price");
+            changes++;
+        }
+
+        @Notify(property = "price")
+        public void priceStopper(VetoablePropertyChangeEvent aEvent)
+        {
+            Assert.assertEquals(aEvent.getName(), "price");
+            if(((Integer) aEvent.getNewValue()) > 1000) throw new PropertyVetoException("Too expensive!");
+        }
+    }
+
+    @Test
+    public void testPropertyRouting()
+    {
+        MessageBus lBus = new MessageBus();
+        Property<Integer> lPrice = new Property<Integer>("price", true, this, lBus, 10);
+        Property<Integer> lAmount = new Property<Integer>("amount", true, this, lBus, 1);
+        PriceListener lListener = new PriceListener();
+        lBus.register(lListener);
+        lBus.register(this);
+        counter = 0;
+
+        // The handlers without a property filter see both properties.
+        lAmount.setValue(2000);
+        lPrice.setValue(20);
+        Assert.assertEquals(lListener.changes, 1);
+        Assert.assertEquals(counter, 2);
+
+        try
+        {
+            lPrice.setValue(2000);
+            Assert.fail();
+        }
+        catch(PropertyVetoException e)
+        {
+            // Should arrive here.
+        }
+        Assert.assertEquals(lPrice.getValue(), new Integer(20));
+        Assert.assertEquals(lListener.changes, 1);
+    }
+
+    public static class RefreshListener
+    {
+        private int prices;
+        private int amounts;
+
+        @Notify(property = "price")
+        public void priceChanged(PropertyChangeEvent aEvent)
+        {
+            prices++;
+        }
+
+        @Notify(property = "amount")
+        public void amountChanged(PropertyChangeEvent aEvent)
+        {
+            amounts++;
+        }
+    }
+
+    @Test
+    public void testAllProperties()
+    {
+        // An event without property name tells that all properties might have changed, every filter accepts it.
+        MessageBus lBus = new MessageBus();
+        RefreshListener lListener = new RefreshListener();
+        RefreshListener lBound = new RefreshListener();
+        lBus.register(lListener);
+        lBus.register(lBound, this);
+        lBus.publish(new PropertyChangeEvent(this, null, null, null));
+        lBus.publish(new PropertyChangeEvent(this, "price", 1, 2));
+        Assert.assertEquals(lListener.prices, 2);
+        Assert.assertEquals(lListener.amounts, 1);
+        Assert.assertEquals(lBound.prices, 2);
+        Assert.assertEquals(lBound.amounts, 1);
+
+        // The compiled handlers and the replay of a sticky bus do the same.
+        lBus.unregister(lBound);
+        lBus.setCompiledDispatch(1);
+        lBus.setSticky(4);
+        lBus.publish(new PropertyChangeEvent(this, null, null, null));
+        Assert.assertEquals(lListener.prices, 3);
+        Assert.assertEquals(lListener.amounts, 2);
+        RefreshListener lLate = new RefreshListener();
+        lBus.register(lLate);
+        Assert.assertEquals(lLate.prices, 1);
+        Assert.assertEquals(lLate.amounts, 1);
+    }
+
+    @Test
+    public void testStickyReplay()
+    {
+        MessageBus lBus = new MessageBus();
+        lBus.setSticky(2);
+        Property<Integer> lPrice = new Property<Integer>("price", true, this, lBus, 10);
+        Property<Integer> lAmount = new Property<Integer>("amount", false, this, lBus, 1);
+        Property<Integer> lOther = new Property<Integer>("other", false, new Object(), lBus, 1);
+
+        // The vetoable events are not remembered, so they are not created for a sticky bus without subscribers.
+        Assert.assertTrue(lBus.hasSubscribersFor(PropertyChangeEvent.class));
+        Assert.assertFalse(lBus.hasSubscribersFor(VetoablePropertyChangeEvent.class));
+
+        // Nobody listens yet, the changes are remembered anyway.
+        lPrice.setValue(20);
+        lPrice.setValue(30);
+        lAmount.setValue(5);
+
+        // A late subscriber receives the last value of each property.
+        final List<PropertyChangeEvent> lReceived = new ArrayList<PropertyChangeEvent>();
+        lBus.subscribe(PropertyChangeEvent.class, lReceived::add);
+        Assert.assertEquals(lReceived.size(), 2);
+        Assert.assertEquals(lReceived.get(0).getNewValue(), 30);
+        Assert.assertEquals(lReceived.get(1).getNewValue(), 5);
+
+        // A new subscriber receives exactly the remembered events, the change of the price is the oldest one and it is evicted.
+        lOther.setValue(2);
+        Assert.assertEquals(lReceived.size(), 3);
+        final List<PropertyChangeEvent> lLate = new ArrayList<PropertyChangeEvent>();
+        lBus.subscribe(PropertyChangeEvent.class, lLate::add);
+        Assert.assertEquals(lLate.size(), 2);
+        Assert.assertEquals(lLate.get(0).getPropertyName(), "amount");
+        Assert.assertEquals(lLate.get(0).getNewValue(), 5);
+        Assert.assertEquals(lLate.get(1).getPropertyName(), "other");
+        Assert.assertEquals(lLate.get(1).getNewValue(), 2);
+        Assert.assertEquals(lReceived.size(), 3);
+
+        // The filters of the handlers apply.
+        PriceListener lListener = new PriceListener();
+        lBus.register(lListener);
+        Assert.assertEquals(lListener.changes, 0);
+
+        lBus.setSticky(0);
+        counter = 0;
+        lBus.register(this);
+        Assert.assertEquals(counter, 0);
+    }
+
     @Notify
     public void negativeStopper(VetoablePropertyChangeEvent aEvent)
     {
@@ -0,0 +1,128 @@
+/*
+ * Library "lib-messagebus".
+ * Copyright (c) 2011 Bruno Ranschaert, SDI-Consulting BVBA.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sdicons.bus;
+
+import com.sdicons.bus.RingBufferPublisher.ProducerType;
+import com.sdicons.bus.RingBufferPublisher.WaitStrategy;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.EventObject;
+import java.util.List;
+
+public class RingBufferTest
+{
+    private static final int NR_PRODUCERS = 4;
+    private static final int NR_EVENTS = 50000;
+
+    public static class SequenceEvent extends EventObject
+    {
+        private final int producer;
+        private final int sequence;
+
+        public SequenceEvent(Object aSource, int aProducer, int aSequence)
+        {
+            super(aSource);
+            producer = aProducer;
+            sequence = aSequence;
+        }
+    }
+
+    // Only called from the consumer thread.
+    public static class Listener
+    {
+        private final int[] last = new int[NR_PRODUCERS];
+        private int count = 0;
+        private boolean ordered = true;
+
+        public Listener()
+        {
+            for (int i = 0; i < NR_PRODUCERS; i++) last[i] = -1;
+        }
+
+        @Notify
+        public void callback(SequenceEvent aEvent)
+        {
+            // The events of a single producer should arrive in order.
+            if (aEvent.sequence != last[aEvent.producer] + 1) ordered = false;
+            last[aEvent.producer] = aEvent.sequence;
+            count++;
+        }
+    }
+
+    @Test
+    public void singleProducer()
+    throws InterruptedException
+    {
+        final MessageBus lBus = new MessageBus();
+        final Listener lListener = new Listener();
+        lBus.register(lListener);
+        // A small ring, the producer will have to wait for the consumer.
+        final RingBufferPublisher lRing = new RingBufferPublisher(lBus, 100, ProducerType.SINGLE, WaitStrategy.PARK);
+        Assert.assertEquals(lRing.getCapacity(), 128);
+        lRing.start();
+        for (int i = 0; i < NR_EVENTS; i++)
+        {
+            lRing.publish(new SequenceEvent(this, 0, i));
+        }
+        lRing.close();
+
+        Assert.assertEquals(lListener.count, NR_EVENTS);
+        Assert.assertTrue(lListener.ordered);
+    }
+
+    @Test
+    public void multipleProducers()
+    throws InterruptedException
+    {
+        final MessageBus lBus = new MessageBus();
+        final Listener lListener = new Listener();
+        lBus.register(lListener);
+        final RingBufferPublisher lRing = new RingBufferPublisher(lBus, 1024, ProducerType.MULTI, WaitStrategy.YIELD);
+        lRing.start();
+
+        final List<Thread> lProducers = new ArrayList<Thread>();
+        for (int i = 0; i < NR_PRODUCERS; i++)
+        {
+            final int lProducer = i;
+            lProducers.add(new Thread()
+            {
+                public void run()
+                {
+                    for (int j = 0; j < NR_EVENTS; j++)
+                    {
+                        lRing.publish(new SequenceEvent(this, lProducer, j));
+                    }
+                }
+            });
+        }
+        for (Thread lThread : lProducers) lThread.start();
+        for (Thread lThread : lProducers) lThread.join();
+        lRing.close();
+
+        Assert.assertEquals(lListener.count, NR_PRODUCERS * NR_EVENTS);
+        Assert.assertTrue(lListener.ordered);
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * Library "lib-messagebus".
+ * Copyright (c) 2011 Bruno Ranschaert, SDI-Consulting BVBA.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sdicons.bus;
+
+import com.sdicons.prop.ChangeType;
+import com.sdicons.prop.ListPropertyChangeEvent;
+import com.sdicons.prop.SetPropertyChangeEvent;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.beans.PropertyChangeEvent;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EventObject;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class StripedBusTest
+{
+    private static final int NR_EVENTS = 20000;
+
+    public static class Listener
+    {
+        private final AtomicInteger all = new AtomicInteger();
+        private final AtomicInteger lists = new AtomicInteger();
+        private final AtomicInteger sets = new AtomicInteger();
+
+        @Notify
+        public void any(EventObject aEvent)
+        {
+            all.incrementAndGet();
+        }
+
+        @Notify
+        public void list(ListPropertyChangeEvent aEvent)
+        {
+            lists.incrementAndGet();
+        }
+
+        @Notify
+        public void set(SetPropertyChangeEvent aEvent)
+        {
+            sets.incrementAndGet();
+        }
+    }
+
+    public static class Consumer
+    {
+        @Notify
+        public boolean callback(PropertyChangeEvent aEvent)
+        {
+            return true;
+        }
+    }
+
+    private static List<EventObject> events(Object aSource)
+    {
+        return Arrays.asList(
+            new EventObject(aSource),
+            new PropertyChangeEvent(aSource, "oele", 0, 1),
+            new ListPropertyChangeEvent(aSource, "list", "a", 0, ChangeType.INSERT),
+            new SetPropertyChangeEvent(aSource, "set", "b", ChangeType.INSERT));
+    }
+
+    @Test
+    public void stripes()
+    {
+        Assert.assertEquals(new StripedMessageBus(1).getNrStripes(), 1);
+        Assert.assertEquals(new StripedMessageBus(5).getNrStripes(), 8);
+        Assert.assertEquals(new StripedMessageBus(16).getNrStripes(), 16);
+        try
+        {
+            new StripedMessageBus(0);
+            Assert.fail();
+        }
+        catch (IllegalArgumentException e)
+        {
+            // Should arrive here.
+        }
+    }
+
+    @Test
+    public void deliveryOverStripes()
+    {
+        final MessageBus lParent = new MessageBus();
+        final StripedMessageBus lBus = new StripedMessageBus(lParent, 8);
+        final MessageBus lChild = new MessageBus(lBus);
+        final Listener lListener = new Listener();
+        final Listener lRoot = new Listener();
+        lBus.register(lListener);
+        lParent.register(lRoot);
+        Assert.assertEquals(lBus.getNrSubscribers(), 3);
+
+        // The handlers of the subscriber receive the events of all stripes.
+        for (EventObject lEvent : events(this)) lBus.publish(lEvent);
+        Assert.assertEquals(lListener.all.get(), 4);
+        Assert.assertEquals(lListener.lists.get(), 1);
+        Assert.assertEquals(lListener.sets.get(), 1);
+        Assert.assertEquals(lRoot.all.get(), 4);
+
+        // Events of the child ripple through the striped bus to the parent, a consumer in the stripe stops them.
+        final Consumer lConsumer = new Consumer();
+        lBus.register(lConsumer);
+        lChild.publishAll(events(this));
+        Assert.assertEquals(lListener.all.get(), 8);
+        Assert.assertEquals(lRoot.all.get(), 7);
+
+        lBus.unregister(lConsumer);
+        lBus.unregister(lListener);
+        Assert.assertEquals(lBus.getNrSubscribers(), 0);
+        lChild.publish(new EventObject(this));
+        Assert.assertEquals(lListener.all.get(), 8);
+        Assert.assertEquals(lRoot.all.get(), 8);
+    }
+
+    @Test
+    public void interestAndSubscriptions()
+    {
+        final StripedMessageBus lBus = new StripedMessageBus(4);
+        final MessageBus lChild = new MessageBus(lBus);
+        Assert.assertFalse(lChild.hasSubscribersFor(ListPropertyChangeEvent.class));
+
+        final AtomicInteger lCount = new AtomicInteger();
+        final Subscription lSubscription = lBus.subscribe(ListPropertyChangeEvent.class, e -> lCount.incrementAndGet());
+        Assert.assertTrue(lChild.hasSubscribersFor(ListPropertyChangeEvent.class));
+        Assert.assertFalse(lChild.hasSubscribersFor(SetPropertyChangeEvent.class));
+
+        lChild.publishAll(events(this));
+        Assert.assertEquals(lCount.get(), 1);
+
+        lSubscription.close();
+        Assert.assertFalse(lBus.hasSubscribersFor(ListPropertyChangeEvent.class));
+        lBus.publishAll(events(this));
+        Assert.assertEquals(lCount.get(), 1);
+    }
+
+    @Test
+    public void broadcastThroughStripes()
+    {
+        final MessageBus lRoot = new MessageBus();
+        final StripedMessageBus lBus = new StripedMessageBus(lRoot, 4);
+        final MessageBus lChild = new MessageBus(lBus);
+        Assert.assertEquals(lRoot.getNrChildren(), 0);
+        final Listener lListener = new Listener();
+        lBus.register(lListener);
+        Assert.assertEquals(lRoot.getNrChildren(), 1);
+        final AtomicInteger lCount = new AtomicInteger();
+        lChild.subscribe(SetPropertyChangeEvent.class, e -> lCount.incrementAndGet());
+
+        for (EventObject lEvent : events(this)) lRoot.broadcastDown(lEvent);
+        Assert.assertEquals(lListener.all.get(), 4);
+        Assert.assertEquals(lListener.lists.get(), 1);
+        Assert.assertEquals(lCount.get(), 1);
+    }
+
+    @Test
+    public void concurrentPublishers()
+    throws InterruptedException
+    {
+        final List<ExecutorService> lWorkers = new ArrayList<ExecutorService>();
+        try
+        {
+            final StripedMessageBus lBus = new StripedMessageBus(4);
+            final Listener lListener = new Listener();
+            lBus.register(lListener);
+            lBus.setExecutors(i ->
+            {
+                final ExecutorService lWorker = Executors.newSingleThreadExecutor();
+                lWorkers.add(lWorker);
+                return lWorker;
+            });
+            Assert.assertEquals(lWorkers.size(), 4);
+
+            final AtomicReference<Throwable> lFailure = new AtomicReference<Throwable>();
+            final List<Thread> lThreads = new ArrayList<Thread>();
+            for (final EventObject lEvent : events(this))
+            {
+                lThreads.add(new Thread()
+                {
+                    public void run()
+                    {
+                        try
+                        {
+                            for (int j = 0; j < NR_EVENTS; j++)
+                            {
+                                if ((j & 1) == 0) lBus.publish(lEvent);
+                                else lBus.publishAsync(lEvent);
+                            }
+                        }
+                        catch (Throwable e)
+                        {
+                            lFailure.set(e);
+                        }
+                    }
+                });
+            }
+            for (Thread lThread : lThreads) lThread.start();
+            for (Thread lThread : lThreads) lThread.join();
+            for (ExecutorService lWorker : lWorkers)
+            {
+                lWorker.shutdown();
+                Assert.assertTrue(lWorker.awaitTermination(10, TimeUnit.SECONDS));
+            }
+
+            Assert.assertNull(lFailure.get());
+            Assert.assertEquals(lListener.all.get(), 4 * NR_EVENTS);
+            Assert.assertEquals(lListener.lists.get(), NR_EVENTS);
+            Assert.assertEquals(lListener.sets.get(), NR_EVENTS);
+        }
+        finally
+        {
+            for (ExecutorService lWorker : lWorkers) lWorker.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Library "lib-messagebus".
+ * Copyright (c) 2011 Bruno Ranschaert, SDI-Consulting BVBA.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sdicons.bus.processor;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+public class NotifyProcessorTest
+{
+    // A generic subscriber with the different kinds of handlers.
+    private static final String SUBSCRIBER =
+        "package gen;\n" +
+        "import com.sdicons.bus.Notify;\n" +
+        "import java.beans.PropertyChangeEvent;\n" +
+        "import java.util.EventObject;\n" +
+        "public class Subscriber<E extends EventObject>\n" +
+        "{\n" +
+        "    @Notify public void any(EventObject aEvent) {}\n" +
+        "    @Notify public void typed(E aEvent) {}\n" +
+        "    @Notify(property = \"price\") public boolean price(PropertyChangeEvent aEvent) { return false; }\n" +
+        "    @Notify public Boolean boxed(EventObject aEvent) { return null; }\n" +
+        "    @Notify public static int shared(PropertyChangeEvent aEvent) { return 0; }\n" +
+        "}\n";
+
+    @Test
+    public void warningCleanDispatcher()
+    throws IOException
+    {
+        // Users compiling with all warnings as errors should not be bothered by the generated code.
+        final Path lDir = Files.createTempDirectory("processor");
+        final Path lSource = lDir.resolve("Subscriber.java");
+        Files.write(lSource, SUBSCRIBER.getBytes(StandardCharsets.UTF_8));
+        final Path lOutput = Files.createDirectories(lDir.resolve("classes"));
+
+        final JavaCompiler lCompiler = ToolProvider.getSystemJavaCompiler();
+        final DiagnosticCollector<JavaFileObject> lDiagnostics = new DiagnosticCollector<JavaFileObject>();
+        final StandardJavaFileManager lFiles = lCompiler.getStandardFileManager(lDiagnostics, null, StandardCharsets.UTF_8);
+        final List<String> lOptions = Arrays.asList("-Xlint:all", "-Werror",
+            "-classpath", System.getProperty("java.class.path"),
+            "-processor", NotifyProcessor.class.getName(),
+            "-d", lOutput.toString(), "-s", lOutput.toString());
+        final Boolean lResult = lCompiler.getTask(null, lFiles, lDiagnostics, lOptions, null, lFiles.getJavaFileObjects(lSource.toFile())).call();
+        lFiles.close();
+        final boolean lGenerated = new File(lOutput.toFile(), "gen/Subscriber$$NotifyDispatcher.class").isFile();
+        try (Stream<Path> lPaths = Files.walk(lDir))
+        {
+            lPaths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+
+        Assert.assertTrue(lResult, lDiagnostics.getDiagnostics().toString());
+        for (Diagnostic<? extends JavaFileObject> lDiagnostic : lDiagnostics.getDiagnostics())
+        {
+            Assert.assertEquals(lDiagnostic.getKind(), Diagnostic.Kind.NOTE, lDiagnostic.toString());
+        }
+        Assert.assertTrue(lGenerated);
+    }
+}